@@ -0,0 +1,100 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+import engine.Account;
+import engine.Strategies;
+
+/**
+ * Class AccountBenchmark
+ * Compares the Account variants of task2 (unsynchronized), task3
+ * (synchronized methods) and task4 (synchronized block) with Harness, then
+ * every synchronization strategy of the engine package.
+ *
+ * Every variant is run with 1 up to the number of cores threads sharing one
+ * account, split into a deposit group and a withdraw group by the
+ * depositors:withdrawers ratio. For each trial it prints the throughput of
+ * both groups and the time each thread spent per operation.
+ *
+ * Usage: java bench.AccountBenchmark [depositors:withdrawers [iteration ms]]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AccountBenchmark {
+
+	public static void main(String[] args) {
+		String[] ratio = (args.length > 0 ? args[0] : "3:1").split(":");
+		int depositWeight = Integer.parseInt(ratio[0]);
+		int withdrawWeight = Integer.parseInt(ratio[1]);
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+		Harness harness = new Harness(3, 5, millis);
+
+		System.out.printf("%-9s %7s %14s %10s %14s %14s %12s %12s%n", "variant", "threads",
+				"ops/s", "error", "deposit ops/s", "withdraw ops/s", "deposit ns", "withdraw ns");
+		for (int threads : threadCounts()) {
+			// At least one thread per group once there are two threads
+			int depositors = Math.max(1, Math.round((float) threads * depositWeight / (depositWeight + withdrawWeight)));
+			if (threads > 1 && depositors == threads)
+				depositors--;
+			int withdrawers = threads - depositors;
+
+			report("task2", threads, harness.run(() -> {
+				final task2.Account a = new task2.Account(1234, "Mike", 1000);
+				return subject(a::deposit, a::withdraw);
+			}, depositors, withdrawers));
+			report("task3", threads, harness.run(() -> {
+				final task3.Account a = new task3.Account(1234, "Mike", 1000);
+				return subject(a::deposit, a::withdraw);
+			}, depositors, withdrawers));
+			report("task4", threads, harness.run(() -> {
+				final task4.Account a = new task4.Account(1234, "Mike", 1000);
+				return subject(a::deposit, a::withdraw);
+			}, depositors, withdrawers));
+			for (final Strategies strategy : Strategies.values())
+				report(strategy.getName(), threads, harness.run(() -> {
+					final Account a = new Account(1234, "Mike", 1000, strategy);
+					return subject(a::deposit, a::withdraw);
+				}, depositors, withdrawers));
+		}
+	}
+
+	/**
+	 * @return 1, the powers of two below the core count, and the core count
+	 */
+	private static List<Integer> threadCounts() {
+		int cores = Runtime.getRuntime().availableProcessors();
+		List<Integer> counts = new ArrayList<Integer>();
+		for (int t = 1; t < cores; t *= 2)
+			counts.add(t);
+		counts.add(cores);
+		return counts;
+	}
+
+	private static Harness.Subject subject(final DoubleConsumer deposit,
+			final DoubleConsumer withdraw) {
+		return new Harness.Subject() {
+			public void deposit(double amount) {
+				deposit.accept(amount);
+			}
+
+			public void withdraw(double amount) {
+				withdraw.accept(amount);
+			}
+		};
+	}
+
+	private static void report(String variant, int threads, Harness.Result r) {
+		System.out.printf("%-9s %7d %14.0f %10.0f %14.0f %14.0f %12.1f %12.1f%n", variant, threads,
+				r.opsPerSecond(), r.opsPerSecondError(), r.depositOpsPerSecond(), r.withdrawOpsPerSecond(),
+				r.depositNanosPerOp(), r.withdrawNanosPerOp());
+	}
+
+}
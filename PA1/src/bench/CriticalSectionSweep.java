@@ -0,0 +1,143 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class CriticalSectionSweep
+ * Measures how the size of the critical section limits scaling. A deposit
+ * does a fixed total amount of work, part of it inside a synchronized
+ * block around the balance update and the rest outside. task3 is the case
+ * where all of it is inside, task4 the case where almost none is. The sweep
+ * goes over the inside share of the work and over the thread count, and
+ * for every point compares the measured speedup over one thread with what
+ * Amdahl's law predicts:
+ *
+ *   speedup(n) = 1 / (s + (1 - s) / min(n, cores))
+ *
+ * The serial fraction s is not taken from the iteration counts but
+ * measured: the single thread time of the locked part alone, lock included,
+ * over the single thread time of a whole deposit.
+ *
+ * Usage: java bench.CriticalSectionSweep [work [iteration ms]]
+ * work is the number of work iterations per deposit, default 10000.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class CriticalSectionSweep {
+
+	/**
+	 * Share of the work done inside the lock
+	 */
+	private static final double[] INSIDE = { 0, 0.01, 0.05, 0.1, 0.25, 0.5, 1 };
+
+	/**
+	 * Only read when a result happens to hit a magic value, which keeps the
+	 * JIT from dropping the work
+	 */
+	static volatile long sink;
+
+	public static void main(String[] args) {
+		int work;
+		long millis;
+		try {
+			work = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+			millis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+			if (work < 1 || millis < 1)
+				throw new IllegalArgumentException("Work and iteration time must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		Harness harness = new Harness(2, 3, millis);
+		System.out.printf("%d work iterations per deposit, %d cores%n", work, cores);
+		System.out.printf("%8s %10s %8s %14s %10s %10s %10s%n", "inside", "serial s", "threads", "ops/s",
+				"speedup", "amdahl", "efficiency");
+
+		for (double share : INSIDE) {
+			final int inside = (int) Math.round(work * share);
+			final int outside = work - inside;
+			double single = harness.run(() -> new Section(inside, outside), 1, 0).opsPerSecond();
+			double lockedOnly = harness.run(() -> new Section(inside, 0), 1, 0).opsPerSecond();
+			double s = Math.min(1, single / lockedOnly);
+
+			for (int threads : threadCounts(cores)) {
+				double ops = threads == 1 ? single
+						: harness.run(() -> new Section(inside, outside), threads, 0).opsPerSecond();
+				double speedup = ops / single;
+				double amdahl = 1 / (s + (1 - s) / Math.min(threads, cores));
+				System.out.printf("%7.0f%% %10.4f %8d %14.0f %10.2f %10.2f %9.0f%%%n", share * 100, s, threads,
+						ops, speedup, amdahl, 100 * speedup / amdahl);
+			}
+		}
+	}
+
+	/**
+	 * @return 1 and the powers of two up to twice the core count, so the
+	 *         curve also shows what more threads than cores do
+	 */
+	private static List<Integer> threadCounts(int cores) {
+		List<Integer> counts = new ArrayList<Integer>();
+		for (int t = 1; t <= 2 * cores; t *= 2)
+			counts.add(t);
+		if (counts.get(counts.size() - 1) < 2 * cores)
+			counts.add(2 * cores);
+		return counts;
+	}
+
+	/**
+	 * xorshift steps: work the JIT cannot fold away
+	 */
+	static long spin(long x, int iterations) {
+		for (int i = 0; i < iterations; i++) {
+			x ^= x << 13;
+			x ^= x >>> 7;
+			x ^= x << 17;
+		}
+		return x;
+	}
+
+	static void consume(long x) {
+		if (x == 0x5DEECE66DL)
+			sink = x;
+	}
+
+	/**
+	 * A balance whose deposit does inside iterations of work under the lock
+	 * and outside iterations before taking it
+	 */
+	private static final class Section implements Harness.Subject {
+		private final int inside;
+		private final int outside;
+		private double balance;
+		private long state = 1;
+
+		Section(int inside, int outside) {
+			this.inside = inside;
+			this.outside = outside;
+		}
+
+		public void deposit(double amount) {
+			consume(spin(ThreadLocalRandom.current().nextLong() | 1, outside));
+			synchronized (this) {
+				state = spin(state, inside);
+				balance = balance + amount;
+			}
+		}
+
+		public void withdraw(double amount) {
+			synchronized (this) {
+				balance = balance - amount;
+			}
+		}
+	}
+
+}
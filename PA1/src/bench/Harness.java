@@ -0,0 +1,248 @@
+package bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * Class Harness
+ * A small benchmark runner in the spirit of JMH, for code that has to run
+ * without a build tool. Each trial builds a fresh subject and two thread
+ * groups sharing it, one depositing and one withdrawing. The threads are
+ * started and parked on a latch before the clock starts, so thread startup
+ * is not measured. Warm-up iterations are run and discarded, then every
+ * measurement iteration counts the operations done in a fixed time window.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+public class Harness {
+
+	/**
+	 * What a benchmark exercises: anything with deposit and withdraw.
+	 */
+	public interface Subject {
+		void deposit(double amount);
+		void withdraw(double amount);
+	}
+
+	/**
+	 * Warm-up iterations per trial
+	 */
+	private final int warmups;
+
+	/**
+	 * Measurement iterations per trial
+	 */
+	private final int iterations;
+
+	/**
+	 * Length of one iteration in milliseconds
+	 */
+	private final long iterationMillis;
+
+	public Harness(int warmups, int iterations, long iterationMillis) {
+		this.warmups = warmups;
+		this.iterations = iterations;
+		this.iterationMillis = iterationMillis;
+	}
+
+	/**
+	 * Runs one trial.
+	 *
+	 * @param subjects Creates the shared subject, once per iteration
+	 * @param depositors Threads in the deposit group
+	 * @param withdrawers Threads in the withdraw group
+	 * @return Per group throughput and latency over the measurement iterations
+	 */
+	public Result run(Supplier<? extends Subject> subjects, int depositors, int withdrawers) {
+		Result result = new Result(depositors, withdrawers, iterations);
+		for (int i = 0; i < warmups; i++)
+			iteration(subjects.get(), depositors, withdrawers, null, 0);
+		for (int i = 0; i < iterations; i++)
+			iteration(subjects.get(), depositors, withdrawers, result, i);
+		return result;
+	}
+
+	private void iteration(final Subject subject, int depositors, int withdrawers, Result result, int index) {
+		final Worker[] workers = new Worker[depositors + withdrawers];
+		final CountDownLatch go = new CountDownLatch(1);
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(subject, i < depositors, go);
+			workers[i].start();
+		}
+
+		long start = System.nanoTime();
+		go.countDown();
+		try {
+			Thread.sleep(iterationMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Worker w : workers)
+			w.running = false;
+		long elapsed = System.nanoTime() - start;
+
+		for (Worker w : workers) {
+			try {
+				w.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (result != null)
+			for (Worker w : workers)
+				result.add(index, w.depositing, w.ops, elapsed);
+	}
+
+	/**
+	 * One benchmark thread, spinning on a single operation until stopped.
+	 */
+	private static final class Worker extends Thread {
+		private final Subject subject;
+		private final boolean depositing;
+		private final CountDownLatch go;
+		volatile boolean running = true;
+		long ops;
+
+		Worker(Subject subject, boolean depositing, CountDownLatch go) {
+			this.subject = subject;
+			this.depositing = depositing;
+			this.go = go;
+		}
+
+		public void run() {
+			try {
+				go.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			long n = 0;
+			if (depositing) {
+				while (running) {
+					subject.deposit(10);
+					n++;
+				}
+			} else {
+				while (running) {
+					subject.withdraw(10);
+					n++;
+				}
+			}
+			ops = n;
+		}
+	}
+
+	/**
+	 * Throughput and latency of one trial, per thread group.
+	 */
+	public static final class Result {
+		public final int depositors;
+		public final int withdrawers;
+
+		/**
+		 * Operations per second of each group, per iteration
+		 */
+		private final double[] depositRate;
+		private final double[] withdrawRate;
+
+		/**
+		 * Summed thread time in nanoseconds of each group, per iteration
+		 */
+		private final double[] depositNanos;
+		private final double[] withdrawNanos;
+
+		/**
+		 * Operations of each group, per iteration
+		 */
+		private final long[] depositOps;
+		private final long[] withdrawOps;
+
+		Result(int depositors, int withdrawers, int iterations) {
+			this.depositors = depositors;
+			this.withdrawers = withdrawers;
+			depositRate = new double[iterations];
+			withdrawRate = new double[iterations];
+			depositNanos = new double[iterations];
+			withdrawNanos = new double[iterations];
+			depositOps = new long[iterations];
+			withdrawOps = new long[iterations];
+		}
+
+		void add(int i, boolean depositing, long ops, long elapsedNanos) {
+			double rate = ops / (elapsedNanos / 1e9);
+			if (depositing) {
+				depositRate[i] += rate;
+				depositNanos[i] += elapsedNanos;
+				depositOps[i] += ops;
+			} else {
+				withdrawRate[i] += rate;
+				withdrawNanos[i] += elapsedNanos;
+				withdrawOps[i] += ops;
+			}
+		}
+
+		/**
+		 * @return mean operations per second of all threads together
+		 */
+		public double opsPerSecond() {
+			return mean(depositRate) + mean(withdrawRate);
+		}
+
+		public double depositOpsPerSecond() {
+			return mean(depositRate);
+		}
+
+		public double withdrawOpsPerSecond() {
+			return mean(withdrawRate);
+		}
+
+		/**
+		 * @return standard deviation of the total throughput across iterations
+		 */
+		public double opsPerSecondError() {
+			double[] total = new double[depositRate.length];
+			for (int i = 0; i < total.length; i++)
+				total[i] = depositRate[i] + withdrawRate[i];
+			double m = mean(total);
+			double sum = 0;
+			for (double t : total)
+				sum += (t - m) * (t - m);
+			return total.length > 1 ? Math.sqrt(sum / (total.length - 1)) : 0;
+		}
+
+		/**
+		 * @return mean nanoseconds a deposit thread spent per deposit
+		 */
+		public double depositNanosPerOp() {
+			return perOp(depositNanos, depositOps);
+		}
+
+		/**
+		 * @return mean nanoseconds a withdraw thread spent per withdrawal
+		 */
+		public double withdrawNanosPerOp() {
+			return perOp(withdrawNanos, withdrawOps);
+		}
+
+		private static double perOp(double[] nanos, long[] ops) {
+			double n = 0;
+			long o = 0;
+			for (int i = 0; i < nanos.length; i++) {
+				n += nanos[i];
+				o += ops[i];
+			}
+			return o == 0 ? Double.NaN : n / o;
+		}
+
+		private static double mean(double[] values) {
+			double sum = 0;
+			for (double v : values)
+				sum += v;
+			return values.length == 0 ? 0 : sum / values.length;
+		}
+	}
+}
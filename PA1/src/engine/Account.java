@@ -0,0 +1,630 @@
+package engine;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class Account
+ * Implements one customized customer account for many of our own threads.
+ *
+ * This is the task2/task3/task4 account with the synchronization taken out
+ * into a SyncStrategy, so one engine can run any of them. The strategy is
+ * picked per account, or for the whole run with -Daccount.sync=name.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ * 
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Account {
+
+	/*
+	 * ------------
+	 * Data members
+	 * ------------
+	 */
+
+	/**
+	 * Attribute presents an account number
+	 */
+	
+	private int acc;
+	/**
+	 * Attribute that presents an customer name
+	 */
+	private String name;
+	/**
+	 * Fake computation iterations around each deposit update, as in task4
+	 */
+	static final int DEPOSIT_WORK = 100;
+	/**
+	 * Fake computation iterations around each withdrawal update, as in task4
+	 */
+	static final int WITHDRAW_WORK = 10000;
+
+	/**
+	 * Attribute that presents an account balance, with its guard
+	 */
+	private final Balance balance;
+	/**
+	 * Strategy the balance was created with
+	 */
+	private final SyncStrategy strategy;
+
+	/**
+	 * Held by transfers touching this account. A ReentrantLock rather than
+	 * a monitor so that transfers do not pin virtual threads.
+	 */
+	private final ReentrantLock transferLock = new ReentrantLock();
+	/**
+	 * Creation order, breaks ties between accounts with the same number
+	 */
+	private final long serial = SERIALS.getAndIncrement();
+	private static final AtomicLong SERIALS = new AtomicLong();
+
+	/**
+	 * Journal the mutations of this account are appended to, or null
+	 */
+	private volatile Journal journal;
+	/**
+	 * History the transactions of this account are recorded in, or null
+	 */
+	private volatile History history;
+	/**
+	 * Journal position of the last record of this account, guarded by the
+	 * order lock
+	 */
+	private long journalPosition;
+
+	/**
+	 * Threads parked in a blocking withdrawal until this account is funded
+	 */
+	private final ConcurrentLinkedQueue<Thread> fundWaiters = new ConcurrentLinkedQueue<Thread>();
+
+	/**
+	 * Aggregates this account is tracked by, or null
+	 */
+	private volatile Aggregates aggregates;
+	/**
+	 * Balance as last seen by the aggregates, and as last ranked by them,
+	 * and the changes they have yet to rank, accessed by them
+	 */
+	long standingCents;
+	volatile Aggregates.Standing standing;
+	long standingVersion;
+	int standingChanges;
+	
+	/*
+	 * ------------
+	 * Constructors
+	 * ------------
+	 */
+
+	/**
+	 * Assigns account number, name and balance.
+	 *
+	 * @param acc A unique integer that represents account number
+	 * @param name A string indicating human-readable customer's name
+	 * @param balance A double indicating account balance
+	 */
+
+	public Account(int acc, String name, double balance) {
+		this(acc, name, balance, Strategies.fromProperty());
+	}
+
+	/**
+	 * Assigns account number, name, balance and synchronization strategy.
+	 *
+	 * @param acc A unique integer that represents account number
+	 * @param name A string indicating human-readable customer's name
+	 * @param balance A double indicating account balance
+	 * @param strategy How the balance is guarded
+	 */
+
+	public Account(int acc, String name, double balance, SyncStrategy strategy) {
+		super();
+		this.acc = acc;
+		this.name = name;
+		this.strategy = strategy;
+		this.balance = strategy.newBalance(balance);
+		LockStats stats = this.balance.getLockStats();
+		if (stats != null)
+			stats.setAccount(this);
+	}
+	
+	
+	@Override
+	/**
+	 * equals method works as == operator 
+	 * it checks if two accounts are identical
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Account other = (Account) obj;
+		if (acc != other.acc)
+			return false;
+		if (Double.doubleToLongBits(getBalance()) != Double
+				.doubleToLongBits(other.getBalance()))
+			return false;
+		if (name == null) {
+			if (other.name != null)
+				return false;
+		} else if (!name.equals(other.name))
+			return false;
+		return true;
+	}
+
+	/**
+	 * Accessor for account no
+	 * @return account no
+	 */
+	public int getAcc() {
+		return acc;
+	}
+	
+	/**
+	 * Mutator for account no 
+	 * @param acc A unique int for acoount number
+	 */
+	public void setAcc(int acc) {
+		this.acc = acc;
+	}
+	
+	/**
+	 * Accessor for a customer's name
+	 * @return a customer's name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Mutator for a customer name
+	 * @param name A string that represents a customer name
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Accessor for account balance
+	 * @return an account balance
+	 */
+	public double getBalance() {
+		return balance.get();
+	}
+	
+	/**
+	 * Mutator for account balance
+	 * @param balance A double that represents an account balance
+	 */
+	public void setBalance(double balance) {
+		ReentrantLock order = orderLock();
+		double previous;
+		if (order == null) {
+			previous = this.balance.set(balance);
+		} else {
+			long position;
+			order.lock();
+			try {
+				previous = this.balance.set(balance);
+				position = log(Journal.SET, balance);
+			} finally {
+				order.unlock();
+			}
+			awaitLogged(position);
+		}
+		// Recorded as what it added, which commutes with the other records
+		long cents = Math.round(balance * 100) - Math.round(previous * 100);
+		record(History.SET, cents);
+		changed(cents);
+		signalFunds();
+	}
+
+	/**
+	 * Reads the balance in cents together with the journal position of
+	 * the last record of this account, so that a checkpoint knows which
+	 * records its balance holds
+	 * @param position where the position is stored, at index 0
+	 * @return the balance in cents
+	 */
+	public long getCents(long[] position) {
+		ReentrantLock order = orderLock();
+		if (order != null)
+			order.lock();
+		try {
+			position[0] = journalPosition;
+			return Math.round(balance.get() * 100);
+		} finally {
+			if (order != null)
+				order.unlock();
+		}
+	}
+
+	/**
+	 * Accessor for the journal
+	 * @return the journal mutations are appended to, or null
+	 */
+	public Journal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Mutator for the journal. Balances are not written to the journal when
+	 * it is attached, so restore them from it first.
+	 * @param journal the journal to append mutations to, or null for none
+	 */
+	public void setJournal(Journal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Accessor for the history
+	 * @return the history transactions are recorded in, or null
+	 */
+	public History getHistory() {
+		return history;
+	}
+
+	/**
+	 * Mutator for the history. Only transactions from now on are recorded.
+	 * @param history the history to record transactions in, or null for none
+	 */
+	public void setHistory(History history) {
+		this.history = history;
+	}
+
+	/**
+	 * Accessor for the aggregates
+	 * @return the aggregates tracking this account, or null
+	 */
+	public Aggregates getAggregates() {
+		return aggregates;
+	}
+
+	/**
+	 * Set by Aggregates.track
+	 */
+	void setAggregates(Aggregates aggregates) {
+		this.aggregates = aggregates;
+	}
+
+	/**
+	 * @return the creation order of this account
+	 */
+	long getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Accessor for the synchronization strategy
+	 * @return the strategy guarding this account
+	 */
+	public SyncStrategy getStrategy() {
+		return strategy;
+	}
+	
+	/**
+	 * A method to print this account 
+	 */
+	public String toString(){
+		return "Account: "+acc+" \tName: "+name+" \tBalance:\t"+getBalance();
+	}
+
+	/**
+	 * A method that allows a customer to deposit money into this account
+	 * @param amount A double that represents a deposit amount
+	 */
+	public void deposit(double amount){
+		update(amount, DEPOSIT_WORK);
+		long cents = Math.round(amount * 100);
+		record(History.DEPOSIT, cents);
+		changed(cents);
+		signalFunds();
+	}
+
+	/**
+	 * A method that allows a customer to withdraw money from this account
+	 * @param amount A double that represents a withdrawal amount
+	 */
+	public void withdraw(double amount){
+		update(-amount, WITHDRAW_WORK);
+		long cents = -Math.round(amount * 100);
+		record(History.WITHDRAWAL, cents);
+		changed(cents);
+	}
+
+	/**
+	 * A method that withdraws money only if the balance covers it. The
+	 * check and the debit are one atomic step of the strategy; with the cas
+	 * strategy that is a single compare-and-set and no lock. It does not do
+	 * the fake computation of withdraw.
+	 * @param amount A double that represents a withdrawal amount
+	 * @return false, leaving the balance alone, on insufficient funds
+	 * @throws IllegalArgumentException if amount is not positive
+	 */
+	public boolean tryWithdraw(double amount){
+		checkPositive(amount);
+		ReentrantLock order = orderLock();
+		if (order == null) {
+			if (!balance.tryDebit(amount))
+				return false;
+		} else {
+			long position;
+			order.lock();
+			try {
+				if (!balance.tryDebit(amount))
+					return false;
+				position = log(Journal.DELTA, -amount);
+			} finally {
+				order.unlock();
+			}
+			awaitLogged(position);
+		}
+		long cents = -Math.round(amount * 100);
+		record(History.WITHDRAWAL, cents);
+		changed(cents);
+		return true;
+	}
+
+	/**
+	 * A method that withdraws money, waiting until the balance covers it.
+	 * The thread parks and is only woken by deposits, transfers into and
+	 * balance changes of this account.
+	 * @param amount A double that represents a withdrawal amount
+	 * @throws InterruptedException if interrupted while waiting; nothing
+	 *         has been withdrawn then
+	 * @throws IllegalArgumentException if amount is not positive
+	 */
+	public void withdrawWhenFunded(double amount) throws InterruptedException {
+		awaitFunds(amount, 0);
+	}
+
+	/**
+	 * A method that withdraws money, waiting at most the given time until
+	 * the balance covers it.
+	 * @param amount A double that represents a withdrawal amount
+	 * @return false if the time ran out before the balance covered amount
+	 * @throws InterruptedException if interrupted while waiting; nothing
+	 *         has been withdrawn then
+	 * @throws IllegalArgumentException if amount is not positive
+	 */
+	public boolean tryWithdraw(double amount, long timeout, TimeUnit unit) throws InterruptedException {
+		return awaitFunds(amount, Math.max(1, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * @param nanos longest wait, or 0 for no limit
+	 */
+	private boolean awaitFunds(double amount, long nanos) throws InterruptedException {
+		checkPositive(amount);
+		if (tryWithdraw(amount))
+			return true;
+		long deadline = System.nanoTime() + nanos;
+		Thread me = Thread.currentThread();
+		fundWaiters.add(me);
+		try {
+			// Queued before checking again, so a deposit from now on unparks us
+			while (!tryWithdraw(amount)) {
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				if (nanos == 0) {
+					LockSupport.park(this);
+				} else {
+					long left = deadline - System.nanoTime();
+					if (left <= 0)
+						return false;
+					LockSupport.parkNanos(this, left);
+				}
+			}
+			return true;
+		} finally {
+			fundWaiters.remove(me);
+		}
+	}
+
+	/**
+	 * Rejects amounts a checked withdrawal cannot take: a negative one
+	 * would pass the funds check and pay in, and NaN would be stored
+	 */
+	private static void checkPositive(double amount){
+		if (!(amount > 0))
+			throw new IllegalArgumentException("Amount must be positive: " + amount);
+	}
+
+	/**
+	 * Unparks the threads waiting for funds on this account, which check
+	 * again. Costs a fence and one read when nobody waits.
+	 */
+	private void signalFunds(){
+		// Orders the balance update before the read of the queue, pairing
+		// with the waiter queueing itself before it reads the balance
+		VarHandle.fullFence();
+		if (fundWaiters.isEmpty())
+			return;
+		for (Thread t : fundWaiters)
+			LockSupport.unpark(t);
+	}
+
+	/**
+	 * A method that moves money from this account into another one.
+	 *
+	 * Both accounts' transfer locks are taken in account number order, so
+	 * two transfers running in opposite directions cannot deadlock, and
+	 * transfers touching the same account never interleave. Deposits and
+	 * withdrawals do not take these locks; they stay atomic through the
+	 * strategy of each account, so no money is created or lost, but a
+	 * reader may see it on its way between the two accounts.
+	 *
+	 * Account numbers must not be changed while transfers are running.
+	 *
+	 * @param to The account receiving the money
+	 * @param amount A double that represents the amount moved
+	 */
+	public void transferTo(Account to, double amount){
+		if (to == this)
+			return;
+		boolean thisFirst = acc < to.acc || (acc == to.acc && serial < to.serial);
+		ReentrantLock first = thisFirst ? transferLock : to.transferLock;
+		ReentrantLock second = thisFirst ? to.transferLock : transferLock;
+		long out;
+		long in;
+		first.lock();
+		try {
+			second.lock();
+			try {
+				out = move(-amount);
+				in = to.move(amount);
+				record(History.TRANSFER_OUT, -Math.round(amount * 100));
+				to.record(History.TRANSFER_IN, Math.round(amount * 100));
+			} finally {
+				second.unlock();
+			}
+		} finally {
+			first.unlock();
+		}
+		awaitLogged(out);
+		to.awaitLogged(in);
+		changed(-Math.round(amount * 100));
+		to.changed(Math.round(amount * 100));
+		to.signalFunds();
+	}
+
+	/**
+	 * Updates the aggregates, if the account is tracked
+	 * @param cents what the change added to the balance, in whole cents
+	 */
+	private void changed(long cents){
+		Aggregates a = aggregates;
+		if (a != null)
+			a.refresh(this, cents);
+	}
+
+	/**
+	 * Adds delta to the balance. A journaled change is made and journaled
+	 * under the order lock; the fake computation is then done outside it.
+	 * @param delta amount to add, negative for a withdrawal
+	 * @param work iterations of fake computation on each side of the update
+	 */
+	private void update(double delta, int work){
+		if (orderLock() == null) {
+			balance.update(delta, work);
+			return;
+		}
+		waste(work);
+		awaitLogged(move(delta));
+		waste(work);
+	}
+
+	/**
+	 * Adds delta to the balance without fake computation, and journals it
+	 * under the order lock
+	 * @return the position of the record, or 0 without a journal
+	 */
+	private long move(double delta){
+		ReentrantLock order = orderLock();
+		if (order == null) {
+			balance.update(delta, 0);
+			return 0;
+		}
+		order.lock();
+		try {
+			balance.update(delta, 0);
+			return log(Journal.DELTA, delta);
+		} finally {
+			order.unlock();
+		}
+	}
+
+	/**
+	 * @return the lock a change and its journal record are made under, so
+	 *         that the records of this account are in the order of its
+	 *         changes, or null if nothing records them
+	 */
+	private ReentrantLock orderLock(){
+		Journal j = journal;
+		return j == null ? null : j.lockOf(acc);
+	}
+
+	/**
+	 * Writes a mutation to the journal, if there is one, with the order
+	 * lock held. The journal keeps whole cents, so fractions of a cent are
+	 * not restored.
+	 * @return the position of the record, or 0 without a journal
+	 */
+	private long log(short type, double amount){
+		Journal j = journal;
+		if (j == null)
+			return 0;
+		return journalPosition = j.writeHeld(acc, type, Math.round(amount * 100));
+	}
+
+	/**
+	 * Waits until a record written by log is durable, if the journal is
+	 * SYNC. Called without the order lock, so that appenders of this
+	 * account share the force.
+	 */
+	private void awaitLogged(long position){
+		Journal j = journal;
+		if (j != null && position != 0)
+			j.awaitDurable(acc, position);
+	}
+
+	/**
+	 * Records a transaction in the history, if there is one. Records add up
+	 * in any order, so they are appended after the change, without a lock.
+	 * @param cents what the change added to the balance, in whole cents
+	 */
+	private void record(byte type, long cents){
+		History h = history;
+		if (h != null)
+			h.append(acc, type, cents);
+	}
+
+	/**
+	 * Applies a journal record without journaling it again
+	 * @param type Journal.DELTA or Journal.SET
+	 * @param cents the amount of the record
+	 * @param position where the record ends in the journal
+	 */
+	void restore(short type, long cents, long position){
+		ReentrantLock order = orderLock();
+		if (order != null)
+			order.lock();
+		long delta = cents;
+		try {
+			if (type == Journal.SET)
+				delta -= Math.round(balance.set(cents / 100.0) * 100);
+			else
+				balance.update(cents / 100.0, 0);
+			journalPosition = position;
+		} finally {
+			if (order != null)
+				order.unlock();
+		}
+		changed(delta);
+	}
+
+	/**
+	 * Same fake computation as in the task2/task3/task4 accounts
+	 * @param iterations number of divisions to waste time on
+	 */
+	static void waste(int iterations){
+		// Waste some time doing fake computations
+		double k = 999999999;
+		for(int i=0;i<iterations;i++)
+			k = k / 2;
+	}
+
+}
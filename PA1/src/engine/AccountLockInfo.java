@@ -0,0 +1,75 @@
+package engine;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Class AccountLockInfo
+ * The lock contention counters of one account at one moment, as reported
+ * by LockMetrics.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AccountLockInfo {
+
+	private final int acc;
+	private final String name;
+	private final long acquisitions;
+	private final long contendedAcquisitions;
+	private final long waitNanos;
+	private final long holdNanos;
+
+	@ConstructorProperties({ "acc", "name", "acquisitions", "contendedAcquisitions", "waitNanos", "holdNanos" })
+	public AccountLockInfo(int acc, String name, long acquisitions, long contendedAcquisitions, long waitNanos,
+			long holdNanos) {
+		this.acc = acc;
+		this.name = name;
+		this.acquisitions = acquisitions;
+		this.contendedAcquisitions = contendedAcquisitions;
+		this.waitNanos = waitNanos;
+		this.holdNanos = holdNanos;
+	}
+
+	public int getAcc() {
+		return acc;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getAcquisitions() {
+		return acquisitions;
+	}
+
+	/**
+	 * @return acquisitions that found the lock taken
+	 */
+	public long getContendedAcquisitions() {
+		return contendedAcquisitions;
+	}
+
+	/**
+	 * @return total time spent acquiring the lock
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	/**
+	 * @return total time the lock was held
+	 */
+	public long getHoldNanos() {
+		return holdNanos;
+	}
+
+	public String toString() {
+		return String.format("Account: %d \tName: %s \tacquisitions %d, contended %d, wait %.3f ms, hold %.3f ms",
+				acc, name, acquisitions, contendedAcquisitions, waitNanos / 1e6, holdNanos / 1e6);
+	}
+
+}
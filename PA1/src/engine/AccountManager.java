@@ -0,0 +1,138 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import store.Cut;
+import store.LedgerAuditor;
+
+/**
+ * Class AccountManager
+ * Implements account manager that twists depositor and withdrawal threads.
+ *
+ * Usage: java engine.AccountManager [strategy [execution]]
+ * or:    java -Daccount.sync=strategy -Daccount.execution=execution engine.AccountManager
+ * where strategy is one of none, method, block, reentrant, fair, stamped,
+ * seqlock, cas
+ * and execution is one of threads, virtual, pool, forkjoin.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ * 
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AccountManager {
+	public static void main(String[] args) {
+		// TODO Auto-generated method stub
+		SyncStrategy strategy;
+		Execution execution;
+		try {
+			strategy = args.length > 0 ? Strategies.forName(args[0]) : Strategies.fromProperty();
+			execution = args.length > 1 ? Execution.forName(args[1]) : Execution.fromProperty();
+			execution.check(strategy);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		Account [] account = new Account[10];
+		Depositor [] deposit = new Depositor[10];
+		Withdrawer [] withdraw = new Withdrawer[10];
+
+		// The birth of  10 accounts
+		account[0] = new Account(1234,"Mike",1000,strategy);
+		account[1] = new Account(2345,"Adam",2000,strategy);
+		account[2] = new Account(3456,"Linda",3000,strategy);
+		account[3] = new Account(4567,"John",4000,strategy);
+		account[4] = new Account(5678,"Rami",5000,strategy);
+		account[5] = new Account(6789,"Lee",6000,strategy);
+		account[6] = new Account(7890,"Tom",7000,strategy);
+		account[7] = new Account(8901,"Lisa",8000,strategy);
+		account[8] = new Account(9012,"Sam",9000,strategy);
+		account[9] = new Account(4321,"Ted",10000,strategy);
+
+		// The birth of 10 depositors 
+		deposit[0] = new Depositor(account[0]);
+		deposit[1] = new Depositor(account[1]);
+		deposit[2] = new Depositor(account[2]);
+		deposit[3] = new Depositor(account[3]);
+		deposit[4] = new Depositor(account[4]);
+		deposit[5] = new Depositor(account[5]);
+		deposit[6] = new Depositor(account[6]);
+		deposit[7] = new Depositor(account[7]);
+		deposit[8] = new Depositor(account[8]);
+		deposit[9] = new Depositor(account[9]);
+
+		// The birth of  10 withdraws 
+		withdraw[0] = new Withdrawer(account[0]);
+		withdraw[1] = new Withdrawer(account[1]);
+		withdraw[2] = new Withdrawer(account[2]);
+		withdraw[3] = new Withdrawer(account[3]);
+		withdraw[4] = new Withdrawer(account[4]);
+		withdraw[5] = new Withdrawer(account[5]);
+		withdraw[6] = new Withdrawer(account[6]);
+		withdraw[7] = new Withdrawer(account[7]);
+		withdraw[8] = new Withdrawer(account[8]);
+		withdraw[9] = new Withdrawer(account[9]);
+
+		System.out.println("Synchronization strategy: "+strategy.getName());
+		System.out.println("Execution mode: "+execution.getName());
+		System.out.println("Print initial account balances");
+		// Print initial account balances
+		for(int i=0;i<10;i++)
+			System.out.println(account[i]);
+		Cut opening = Cut.copyOf(LedgerAuditor.source(account));
+
+		// Get start time in milliseconds 
+		long start = System.currentTimeMillis(); 
+
+		System.out.println("Depositor and Withdrawal tasks have been created");
+		/*
+		 * Interleave all tasks
+		 */
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for(int i=0; i<10; i++){
+			tasks.add(deposit[i]);
+			tasks.add(withdraw[i]);
+		}
+
+		try {
+			execution.runAll(tasks);
+		} catch (InterruptedException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		// Get elapsed time in milliseconds 
+		long elapsedTimeMillis = System.currentTimeMillis()-start; 
+
+
+		System.out.println("Print final account balances after all the child thread terminated...");
+		// Print final account balances after all the child thread terminated...	
+		for(int i=0;i<10;i++)
+			System.out.println(account[i]);
+
+		// Every account gets as many deposits of 10 as withdrawals of 10
+		LedgerAuditor.Report audit = new LedgerAuditor().audit(opening,
+				LedgerAuditor.source(account), new long[account.length]);
+		System.out.println("Audit: "+audit);
+		for (LedgerAuditor.Anomaly a : audit.anomalies)
+			System.out.println("  "+a);
+		// Get elapsed time in seconds 
+		float elapsedTimeSec = elapsedTimeMillis/1000F;
+
+		System.out.println("Elapsed time in milliseconds "+elapsedTimeMillis);
+		System.out.println("Elapsed time in seconds is "+elapsedTimeSec);
+
+		//  Get elapsed time in minutes 
+		float elapsedTimeMin = elapsedTimeMillis/(60*1000F); 
+		// Get elapsed time in hours 
+		float elapsedTimeHour = elapsedTimeMillis/(60*60*1000F); 
+		// Get elapsed time in days 
+		float elapsedTimeDay = elapsedTimeMillis/(24*60*60*1000F); 
+
+	}
+
+}
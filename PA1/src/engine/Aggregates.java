@@ -0,0 +1,348 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class Aggregates
+ * Keeps the total of all balances of a set of accounts, and optionally a
+ * ranking of the accounts by balance, up to date as the balances change,
+ * so neither needs a scan of the accounts.
+ *
+ * Every account tracked has a standing: its balance in cents as last seen
+ * here, kept in the account. After each change of its balance, the account
+ * hands in what the change added, in whole cents, which is added to its
+ * standing and to a striped total (a LongAdder), so the total is always
+ * the sum of the standings. Adds can be made in any order, so the balance
+ * is never read again.
+ *
+ * With ranking on, the standings at or above a floor are also kept as
+ * Standing objects in a concurrent skip list ordered by balance, and the
+ * top k accounts are the first k live entries of it. The list holds at
+ * most about its capacity: when it grows past that the floor is raised to
+ * the balance of the entry half way down and everything below is dropped.
+ * Updates to accounts under the floor, most of them, do not touch the list
+ * at all. Should the list hold fewer than k accounts when asked for the
+ * top k, because rich accounts have fallen under the floor, the floor is
+ * lowered again from a scan of all standings.
+ *
+ * A new standing is put in the list before it replaces the old one, and
+ * whoever replaces an entry removes it, so no entry is left behind; a
+ * reader skips the ones that are already replaced but not yet removed.
+ * The last standing ranked must be the latest one, so writers count their
+ * changes on the account and only the one that finds no other change
+ * counted ranks it; when done, it ranks it again once for each round of
+ * changes counted meanwhile, whose writers left that to it. Every further
+ * turn of this loop takes in at least one change that cost its own writer
+ * nothing more. A writer that finds the floor moved under a standing it
+ * did not list lists it after all. When the writers stop the standings are
+ * the balances and the list is complete above the floor; while they run
+ * the total and the ranking may lag the balances by the updates in
+ * progress.
+ *
+ * The cost on the write path is one atomic add on the account and one
+ * striped add; with ranking two atomic adds and one swap more, and for
+ * accounts above the floor an allocation and a skip list insert and
+ * removal in O(log capacity). getTotal is O(stripes) and top(k) O(k).
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Aggregates {
+
+	/**
+	 * The balance of an account as last seen by the aggregates
+	 */
+	public static final class Standing {
+		private final Account account;
+		private final long cents;
+		/**
+		 * Tells standings of one account with the same balance apart
+		 */
+		private final long version;
+
+		Standing(Account account, long cents, long version) {
+			this.account = account;
+			this.cents = cents;
+			this.version = version;
+		}
+
+		public Account getAccount() {
+			return account;
+		}
+
+		public double getBalance() {
+			return cents / 100.0;
+		}
+
+		public String toString() {
+			return account.getAcc() + " " + account.getName() + " " + getBalance();
+		}
+	}
+
+	/**
+	 * Richest first; then by account, then by version
+	 */
+	private static final Comparator<Standing> RANK = new Comparator<Standing>() {
+		public int compare(Standing a, Standing b) {
+			if (a.cents != b.cents)
+				return a.cents > b.cents ? -1 : 1;
+			if (a.account != b.account)
+				return Long.compare(a.account.getSerial(), b.account.getSerial());
+			return Long.compare(a.version, b.version);
+		}
+	};
+
+	/**
+	 * The standing of accounts under the floor, which are not ranked
+	 */
+	private static final Standing UNLISTED = new Standing(null, Long.MIN_VALUE, 0);
+
+	private static final VarHandle CENTS;
+	private static final VarHandle STANDING;
+	private static final VarHandle VERSION;
+	private static final VarHandle CHANGES;
+	static {
+		try {
+			MethodHandles.Lookup l = MethodHandles.lookup();
+			CENTS = l.findVarHandle(Account.class, "standingCents", long.class);
+			STANDING = l.findVarHandle(Account.class, "standing", Standing.class);
+			VERSION = l.findVarHandle(Account.class, "standingVersion", long.class);
+			CHANGES = l.findVarHandle(Account.class, "standingChanges", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final LongAdder totalCents = new LongAdder();
+	private final List<Account> tracked = new ArrayList<Account>();
+
+	private final ConcurrentSkipListSet<Standing> ranking;
+	private final int capacity;
+	/**
+	 * Entries in the ranking
+	 */
+	private final AtomicInteger listed = new AtomicInteger();
+	/**
+	 * Every standing at or above it is in the ranking
+	 */
+	private volatile long floor = Long.MIN_VALUE;
+	/**
+	 * Held to move the floor, and to track accounts
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * @param rankCapacity about how many accounts the ranking keeps, which
+	 *        bounds k in top(k); 0 for no ranking
+	 */
+	public Aggregates(int rankCapacity) {
+		if (rankCapacity < 0)
+			throw new IllegalArgumentException("Negative rank capacity " + rankCapacity);
+		capacity = rankCapacity;
+		ranking = rankCapacity > 0 ? new ConcurrentSkipListSet<Standing>(RANK) : null;
+	}
+
+	/**
+	 * Keeps the total only
+	 */
+	public Aggregates() {
+		this(0);
+	}
+
+	/**
+	 * Starts tracking accounts. Do it before other threads update them.
+	 * @throws IllegalArgumentException if an account is tracked already,
+	 *         here or elsewhere
+	 */
+	public void track(Account... accounts) {
+		lock.lock();
+		try {
+			for (Account a : accounts) {
+				if (a.getAggregates() != null)
+					throw new IllegalArgumentException("Account " + a.getAcc() + " is tracked already");
+				a.setAggregates(this);
+				tracked.add(a);
+				refresh(a, Math.round(a.getBalance() * 100));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the total of all tracked balances
+	 */
+	public double getTotal() {
+		return totalCents.sum() / 100.0;
+	}
+
+	public long getTotalCents() {
+		return totalCents.sum();
+	}
+
+	public int getAccounts() {
+		lock.lock();
+		try {
+			return tracked.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isRanked() {
+		return ranking != null;
+	}
+
+	/**
+	 * @return the k richest accounts, richest first, fewer if fewer are
+	 *         tracked
+	 * @throws IllegalStateException if ranking is off
+	 * @throws IllegalArgumentException if k is over the rank capacity
+	 */
+	public List<Standing> top(int k) {
+		if (ranking == null)
+			throw new IllegalStateException("Ranking is off");
+		if (k > capacity)
+			throw new IllegalArgumentException("Top " + k + " is over the rank capacity " + capacity);
+		List<Standing> top = collect(k);
+		if (top.size() < k && floor != Long.MIN_VALUE) {
+			lower();
+			top = collect(k);
+		}
+		return top;
+	}
+
+	private List<Standing> collect(int k) {
+		List<Standing> top = new ArrayList<Standing>(k);
+		for (Standing s : ranking) {
+			if (top.size() == k)
+				break;
+			if (STANDING.getVolatile(s.account) == s)
+				top.add(s);
+		}
+		return top;
+	}
+
+	/**
+	 * Brings the standing of an account up to its balance. Called by the
+	 * account after every change of its balance.
+	 * @param delta what the change added to the balance, in cents
+	 */
+	void refresh(Account a, long delta) {
+		if (delta != 0) {
+			CENTS.getAndAdd(a, delta);
+			totalCents.add(delta);
+		}
+		if (ranking == null)
+			return;
+		// Another writer is ranking it, and ranks it again when done
+		if ((int) CHANGES.getAndAdd(a, 1) != 0)
+			return;
+		int changes = 1;
+		do {
+			rank(a, (long) CENTS.getVolatile(a));
+			changes = (int) CHANGES.getAndAdd(a, -changes) - changes;
+		} while (changes != 0);
+	}
+
+	private void rank(Account a, long cents) {
+		boolean list = cents >= floor;
+		Standing next = UNLISTED;
+		if (list) {
+			next = new Standing(a, cents, (long) VERSION.getAndAdd(a, 1L));
+			ranking.add(next);
+			listed.incrementAndGet();
+		}
+		Standing previous = (Standing) STANDING.getAndSet(a, next);
+		if (previous != null && previous != UNLISTED && ranking.remove(previous))
+			listed.decrementAndGet();
+		if (list && listed.get() > capacity)
+			raise();
+		// The floor was lowered under the standing while it was put in
+		else if (!list && cents >= floor)
+			rank(a, cents);
+	}
+
+	/**
+	 * Raises the floor to the balance half way down the ranking and drops
+	 * the entries under it
+	 */
+	private void raise() {
+		if (!lock.tryLock())
+			return;
+		try {
+			if (listed.get() <= capacity)
+				return;
+			int i = 0;
+			long f = floor;
+			for (Standing s : ranking) {
+				if (i++ == capacity / 2) {
+					f = s.cents;
+					break;
+				}
+			}
+			// With as many ties at the floor there is nothing to drop
+			if (f <= floor)
+				return;
+			floor = f;
+			for (Iterator<Standing> it = ranking.descendingIterator(); it.hasNext();) {
+				Standing s = it.next();
+				if (s.cents >= f)
+					break;
+				if (ranking.remove(s))
+					listed.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Lowers the floor to the balance of the standing half the capacity
+	 * down, by a scan of all standings, and lists those above it
+	 */
+	private void lower() {
+		lock.lock();
+		try {
+			int keep = Math.max(1, capacity / 2);
+			PriorityQueue<Long> heap = new PriorityQueue<Long>(keep + 1);
+			for (Account a : tracked) {
+				long cents = (long) CENTS.getVolatile(a);
+				if (heap.size() < keep) {
+					heap.add(cents);
+				} else if (cents > heap.peek()) {
+					heap.poll();
+					heap.add(cents);
+				}
+			}
+			long f = heap.size() < keep ? Long.MIN_VALUE : heap.peek();
+			if (f >= floor)
+				return;
+			floor = f;
+			// Writers from now on list on their own; standings put in before
+			// are refreshed here, or by their writer on seeing the new floor
+			for (Account a : tracked) {
+				Standing s = (Standing) STANDING.getVolatile(a);
+				if ((long) CENTS.getVolatile(a) >= f && (s == UNLISTED || !ranking.contains(s)))
+					refresh(a, 0);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package engine;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Class AggregatesBench
+ * Measures what Aggregates cost deposits and withdrawals, and what they
+ * save the readers. Threads deposit into and withdraw from random cas
+ * accounts, untracked, with the total only and with the total and the
+ * ranking of the richest 256. Then the bank total and the top 10 are taken from the
+ * aggregates and by scanning every account, and compared.
+ *
+ * ns/update is the time of one update on one core: with more threads than
+ * cores the threads take turns.
+ *
+ * Usage: java engine.AggregatesBench [accounts [threads [seconds]]]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AggregatesBench {
+
+	private static final int K = 10;
+	private static final int QUERIES = 100;
+	private static final int CAPACITY = 256;
+
+	public static void main(String[] args) throws InterruptedException {
+		int n;
+		int threads;
+		double seconds;
+		try {
+			n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+			threads = args.length > 1 ? Integer.parseInt(args[1])
+					: Math.max(2, Runtime.getRuntime().availableProcessors());
+			seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+			if (n < K || threads < 1 || seconds <= 0)
+				throw new IllegalArgumentException("Need " + K + " accounts and positive threads and seconds");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d accounts, %d threads, %d cores%n", n, threads, cores);
+
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;
+			if (!print)
+				System.out.println("Warming up");
+			else
+				System.out.printf("%-16s %14s %10s %12s %12s  %s%n", "tracking", "updates/s", "ns/update",
+						"total", "top " + K, "after the run");
+			for (int mode = 0; mode < 3; mode++) {
+				Account[] account = new Account[n];
+				for (int i = 0; i < n; i++)
+					account[i] = new Account(1000 + i, "Customer" + i, 1000 + i % 997, Strategies.CAS);
+				Aggregates agg = mode == 0 ? null : new Aggregates(mode == 2 ? CAPACITY : 0);
+				if (agg != null)
+					agg.track(account);
+
+				Updater[] u = new Updater[threads];
+				for (int i = 0; i < threads; i++)
+					u[i] = new Updater(account, i);
+				long start = System.nanoTime();
+				for (Updater x : u)
+					x.start();
+				Thread.sleep((long) (seconds * 1000));
+				long ops = 0;
+				for (Updater x : u) {
+					x.running = false;
+					x.join();
+					ops += x.ops;
+				}
+				double elapsed = (System.nanoTime() - start) / 1e9;
+
+				long t = System.nanoTime();
+				long scanTotal = 0;
+				for (int q = 0; q < QUERIES; q++)
+					scanTotal = scanTotal(account);
+				double scanTotalNanos = (System.nanoTime() - t) / (double) QUERIES;
+				t = System.nanoTime();
+				double[] scanTop = null;
+				for (int q = 0; q < QUERIES; q++)
+					scanTop = scanTop(account);
+				double scanTopNanos = (System.nanoTime() - t) / (double) QUERIES;
+
+				String name = mode == 0 ? "none (scan)" : mode == 1 ? "total" : "total + ranking";
+				String totalTime = String.format("%.1f us", scanTotalNanos / 1e3);
+				String topTime = String.format("%.1f us", scanTopNanos / 1e3);
+				String check = "";
+				if (agg != null) {
+					t = System.nanoTime();
+					long total = 0;
+					for (int q = 0; q < QUERIES; q++)
+						total = agg.getTotalCents();
+					totalTime = String.format("%.2f us", (System.nanoTime() - t) / 1e3 / QUERIES);
+					check = total == scanTotal ? "total matches" : "TOTAL DOES NOT MATCH";
+					if (agg.isRanked()) {
+						t = System.nanoTime();
+						List<Aggregates.Standing> top = null;
+						for (int q = 0; q < QUERIES; q++)
+							top = agg.top(K);
+						topTime = String.format("%.2f us", (System.nanoTime() - t) / 1e3 / QUERIES);
+						boolean same = top.size() == K;
+						for (int i = 0; same && i < K; i++)
+							same = top.get(i).getBalance() == scanTop[i];
+						check += same ? ", top matches" : ", TOP DOES NOT MATCH";
+					} else {
+						topTime = "-";
+					}
+				}
+				if (print)
+					System.out.printf("%-16s %14.0f %10.1f %12s %12s  %s%n", name, ops / elapsed,
+							elapsed * 1e9 * Math.min(threads, cores) / ops, totalTime, topTime, check);
+			}
+		}
+	}
+
+	private static long scanTotal(Account[] account) {
+		long sum = 0;
+		for (Account a : account)
+			sum += Math.round(a.getBalance() * 100);
+		return sum;
+	}
+
+	/**
+	 * @return the K largest balances, largest first, by a scan with a heap
+	 */
+	private static double[] scanTop(Account[] account) {
+		PriorityQueue<Double> heap = new PriorityQueue<Double>(K + 1);
+		for (Account a : account) {
+			double b = Math.round(a.getBalance() * 100) / 100.0;
+			if (heap.size() < K) {
+				heap.add(b);
+			} else if (b > heap.peek()) {
+				heap.poll();
+				heap.add(b);
+			}
+		}
+		double[] top = new double[K];
+		for (int i = K - 1; i >= 0; i--)
+			top[i] = heap.poll();
+		return top;
+	}
+
+	/**
+	 * Deposits into and withdraws from random accounts
+	 */
+	private static class Updater extends Thread {
+		private final Account[] account;
+		private final int seed;
+		volatile boolean running = true;
+		long ops;
+
+		Updater(Account[] account, int seed) {
+			this.account = account;
+			this.seed = seed;
+		}
+
+		public void run() {
+			SplittableRandom random = new SplittableRandom(seed);
+			long k = 0;
+			while (running) {
+				Account a = account[random.nextInt(account.length)];
+				if (random.nextBoolean())
+					a.deposit(random.nextInt(1, 100));
+				else
+					a.tryWithdraw(random.nextInt(1, 100));
+				k++;
+			}
+			ops = k;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package engine;
+
+/**
+ * Interface Balance
+ * The balance of one account together with the synchronization that guards
+ * it. Every SyncStrategy provides its own implementation.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public interface Balance {
+
+	/**
+	 * @return the current balance
+	 */
+	double get();
+
+	/**
+	 * Overwrites the balance
+	 * @param balance the new balance
+	 * @return the balance it replaced
+	 */
+	double set(double balance);
+
+	/**
+	 * Adds delta to the balance, wasting work iterations of fake computation
+	 * before and after the update. Whether that work is done under the guard
+	 * is up to the strategy.
+	 * @param delta amount to add, negative for a withdrawal
+	 * @param work iterations of fake computation on each side of the update
+	 */
+	void update(double delta, int work);
+
+	/**
+	 * Subtracts amount from the balance if the balance covers it, as one
+	 * atomic check-and-debit, without fake computation.
+	 * @param amount amount to subtract
+	 * @return false, leaving the balance alone, if it is below amount
+	 */
+	boolean tryDebit(double amount);
+
+	/**
+	 * @return the lock contention counters, or null if there is no lock
+	 */
+	LockStats getLockStats();
+
+}
@@ -0,0 +1,86 @@
+package engine;
+
+/**
+ * Class BlockMonitorBalance
+ * A balance where only the update itself runs in a synchronized block and
+ * the fake computations stay outside of it.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class BlockMonitorBalance implements Balance {
+
+	private final LockStats stats = new LockStats();
+
+	private double balance;
+
+	BlockMonitorBalance(double balance) {
+		this.balance = balance;
+	}
+
+	public synchronized double get() {
+		return balance;
+	}
+
+	public synchronized double set(double balance) {
+		double previous = this.balance;
+		this.balance = balance;
+		return previous;
+	}
+
+	public void update(double delta, int work) {
+		Account.waste(work);
+		if (LockMetrics.enabled) {
+			countedAdd(delta, stats.isHeld(), System.nanoTime());
+		} else {
+			synchronized (this) {
+				balance = balance + delta;
+			}
+		}
+		Account.waste(work);
+	}
+
+	public boolean tryDebit(double amount) {
+		if (LockMetrics.enabled)
+			return countedDebit(amount, stats.isHeld(), System.nanoTime());
+		synchronized (this) {
+			return debit(amount);
+		}
+	}
+
+	public LockStats getLockStats() {
+		return stats;
+	}
+
+	private void countedAdd(double delta, boolean busy, long start) {
+		synchronized (this) {
+			stats.acquired(start, busy);
+			balance = balance + delta;
+			stats.released();
+		}
+	}
+
+	private boolean countedDebit(double amount, boolean busy, long start) {
+		synchronized (this) {
+			stats.acquired(start, busy);
+			boolean debited = debit(amount);
+			stats.released();
+			return debited;
+		}
+	}
+
+	/**
+	 * Called holding the monitor
+	 */
+	private boolean debit(double amount) {
+		if (balance < amount)
+			return false;
+		balance = balance - amount;
+		return true;
+	}
+
+}
@@ -0,0 +1,76 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Class CasBalance
+ * A lock-free balance. The double is kept as its raw bits in a long and
+ * updated with a compare-and-set loop.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class CasBalance implements Balance {
+
+	private static final VarHandle BITS;
+
+	static {
+		try {
+			BITS = MethodHandles.lookup().findVarHandle(CasBalance.class, "bits", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private volatile long bits;
+
+	CasBalance(double balance) {
+		this.bits = Double.doubleToRawLongBits(balance);
+	}
+
+	public double get() {
+		return Double.longBitsToDouble(bits);
+	}
+
+	public double set(double balance) {
+		return Double.longBitsToDouble((long) BITS.getAndSet(this, Double.doubleToRawLongBits(balance)));
+	}
+
+	public void update(double delta, int work) {
+		Account.waste(work);
+		long current;
+		do {
+			current = bits;
+		} while (!BITS.weakCompareAndSet(this, current,
+				Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta)));
+		Account.waste(work);
+	}
+
+	/**
+	 * The check and the debit are one compare-and-set: it only succeeds
+	 * if the balance is still the one that was checked. A failed
+	 * compare-and-set means another update came first, so the check is
+	 * done again on the new balance.
+	 */
+	public boolean tryDebit(double amount) {
+		long current;
+		double value;
+		do {
+			current = bits;
+			value = Double.longBitsToDouble(current);
+			if (value < amount)
+				return false;
+		} while (!BITS.weakCompareAndSet(this, current, Double.doubleToRawLongBits(value - amount)));
+		return true;
+	}
+
+	public LockStats getLockStats() {
+		return null;
+	}
+
+}
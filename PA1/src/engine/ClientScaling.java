@@ -0,0 +1,123 @@
+package engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class ClientScaling
+ * Shows how throughput and memory change with the number of concurrent
+ * clients in each execution mode. The same total number of operations is
+ * split over a growing number of Depositor and Withdrawer tasks working on
+ * the 10 accounts of AccountManager. While a run is going a sampler keeps
+ * the peak heap use and the peak number of live platform threads.
+ *
+ * Usage: java engine.ClientScaling [clients,... [total operations [strategy [mode,...]]]]
+ * Defaults: 100,1000,10000 clients, 2000000 operations, reentrant, every
+ * mode this JVM supports. Pass 100000 clients to model 100k customers;
+ * the threads mode may then fail to create its threads, which is reported.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class ClientScaling {
+
+	public static void main(String[] args) throws InterruptedException {
+		String[] counts = (args.length > 0 ? args[0] : "100,1000,10000").split(",");
+		int total = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		SyncStrategy strategy = args.length > 2 ? Strategies.forName(args[2]) : Strategies.REENTRANT;
+		List<Execution> modes = new ArrayList<Execution>();
+		if (args.length > 3) {
+			for (String m : args[3].split(","))
+				modes.add(Execution.forName(m));
+		} else {
+			for (Execution m : Execution.values()) {
+				try {
+					m.check(strategy);
+					modes.add(m);
+				} catch (IllegalArgumentException e) {
+					System.out.println("Skipping " + m.getName() + ": " + e.getMessage());
+				}
+			}
+		}
+
+		System.out.println("Strategy " + strategy.getName() + ", " + total + " operations per run");
+		System.out.printf("%-9s %8s %12s %12s %14s %14s%n", "mode", "clients", "ms", "ops/s",
+				"peak heap MB", "peak threads");
+		for (Execution mode : modes) {
+			mode.check(strategy);
+			for (String c : counts)
+				run(mode, strategy, Integer.parseInt(c.trim()), total);
+		}
+	}
+
+	private static void run(Execution mode, SyncStrategy strategy, int clients, int total)
+			throws InterruptedException {
+		Account[] account = new Account[10];
+		for (int i = 0; i < account.length; i++)
+			account[i] = new Account(1000 + i, "Customer" + i, 1000, strategy);
+
+		int each = Math.max(1, total / clients);
+		List<Runnable> tasks = new ArrayList<Runnable>(clients);
+		for (int i = 0; i < clients; i++) {
+			Account a = account[i % account.length];
+			tasks.add(i % 2 == 0 ? new Depositor(a, each) : new Withdrawer(a, each));
+		}
+
+		System.gc();
+		Sampler sampler = new Sampler();
+		sampler.start();
+		long start = System.nanoTime();
+		String failure = null;
+		try {
+			mode.runAll(tasks);
+		} catch (OutOfMemoryError e) {
+			failure = e.getMessage();
+		}
+		long elapsed = System.nanoTime() - start;
+		sampler.running = false;
+		sampler.join();
+
+		if (failure != null) {
+			System.out.printf("%-9s %8d failed: %s%n", mode.getName(), clients, failure);
+			return;
+		}
+		System.out.printf("%-9s %8d %12d %12.0f %14.1f %14d%n", mode.getName(), clients,
+				elapsed / 1000000, (double) each * clients / (elapsed / 1e9),
+				sampler.peakHeap / (1024.0 * 1024.0), sampler.peakThreads);
+	}
+
+	/**
+	 * Polls heap use and live platform threads every few milliseconds.
+	 */
+	private static class Sampler extends Thread {
+		private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		volatile boolean running = true;
+		long peakHeap;
+		int peakThreads;
+
+		Sampler() {
+			setDaemon(true);
+		}
+
+		public void run() {
+			while (running) {
+				peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+				peakThreads = Math.max(peakThreads, threads.getThreadCount());
+				try {
+					sleep(5);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+}
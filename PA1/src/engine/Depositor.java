@@ -0,0 +1,48 @@
+package engine;
+
+/**
+ * Class Depositor
+ * Implements Depositor task class.
+ *
+ * Unlike the task packages this is a plain Runnable, so that it can run on
+ * its own thread, on virtual threads or on a pool, see Execution.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ * 
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Depositor implements Runnable {
+	private Account account ;
+	/**
+	 * Number of operations to do
+	 */
+	private int operations;
+
+	public Depositor(Account account){
+		this(account, 10000000);
+	}
+
+	public Depositor(Account account, int operations){
+		this.account = account;
+		this.operations = operations;
+	}
+	
+	public void run(){
+		for (int i=0;i<operations;i++)
+		{
+			account.deposit(10);
+		/*			
+ 		try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}*/
+		}
+		
+	}
+
+}
@@ -0,0 +1,187 @@
+package engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class Driver
+ * A configurable replacement for the fixed AccountManager run. Client
+ * threads pick an account with a Zipfian skew and an operation from the
+ * deposit:withdraw:read mix, time every call, and keep going until the
+ * run is over. At the end the driver prints throughput and latency
+ * percentiles taken from the merged per-thread histograms. The clients
+ * are closed-loop, so the latencies leave out queueing once the accounts
+ * are saturated; OpenLoop measures those.
+ *
+ * Usage: java engine.Driver [--name=value ...], see Workload for the names.
+ * The LockMetrics MBean is registered, so lock contention counting can be
+ * switched on during the run with jconsole, or from the start with
+ * -Daccount.lockMetrics=true; the hottest accounts are then printed at the
+ * end.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Driver {
+
+	public static void main(String[] args) {
+		Workload workload;
+		try {
+			workload = Workload.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.println(workload);
+		LockMetrics.registerMBean();
+		Account[] account = workload.newAccounts();
+		Client[] clients = clients(workload, account);
+		long elapsed = run(workload, clients);
+		report(clients, account, elapsed);
+	}
+
+	/**
+	 * Creates one Client per thread of the workload
+	 */
+	static Client[] clients(Workload workload, Account[] account) {
+		Zipf zipf = new Zipf(account.length, workload.getSkew());
+		Client[] clients = new Client[workload.getThreads()];
+		for (int i = 0; i < clients.length; i++)
+			clients[i] = new Client(workload, account, zipf, i);
+		return clients;
+	}
+
+	/**
+	 * Runs the warm-up and the measured period and waits for the clients.
+	 * @return length of the measured period in nanoseconds
+	 */
+	static long run(Workload workload, Client[] clients) {
+		for (Client c : clients)
+			c.start();
+		sleep(workload.getWarmupSeconds());
+		LockMetrics.getInstance().reset();
+		for (Client c : clients)
+			c.measuring = true;
+		long start = System.nanoTime();
+		sleep(workload.getDurationSeconds());
+		for (Client c : clients)
+			c.running = false;
+		long elapsed = System.nanoTime() - start;
+
+		for (Client c : clients) {
+			try {
+				c.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		return elapsed;
+	}
+
+	private static void report(Client[] clients, Account[] account, long elapsed) {
+		Histogram all = new Histogram();
+		Histogram[] byOp = { new Histogram(), new Histogram(), new Histogram() };
+		for (Client c : clients)
+			for (int op = 0; op < byOp.length; op++) {
+				byOp[op].add(c.latency[op]);
+				all.add(c.latency[op]);
+			}
+
+		double seconds = elapsed / 1e9;
+		System.out.printf("Throughput: %.0f ops/s over %.1f s%n", all.getTotalCount() / seconds, seconds);
+		System.out.printf("%-9s %12s %10s %10s %10s %10s %10s%n",
+				"op", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us");
+		String[] names = { "deposit", "withdraw", "read" };
+		for (int op = 0; op < byOp.length; op++)
+			printLatency(names[op], byOp[op]);
+		printLatency("all", all);
+
+		double total = 0;
+		for (Account a : account)
+			total += a.getBalance();
+		System.out.printf("Total balance of %d accounts: %.2f%n", account.length, total);
+
+		LockMetrics metrics = LockMetrics.getInstance();
+		if (metrics.getAccountCount() > 0) {
+			System.out.println("Hottest accounts:");
+			for (AccountLockInfo info : metrics.topAccounts(5))
+				System.out.println(info);
+		}
+	}
+
+	private static void printLatency(String name, Histogram h) {
+		System.out.printf("%-9s %12d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, h.getTotalCount(),
+				h.getMean() / 1e3, h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+				h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3);
+	}
+
+	private static void sleep(double seconds) {
+		try {
+			Thread.sleep((long) (seconds * 1000));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Class Client
+	 * One client thread of the driver, with its own random source and
+	 * histograms so that measuring never needs synchronization.
+	 */
+	static class Client extends Thread {
+
+		static final int DEPOSIT = 0, WITHDRAW = 1, READ = 2;
+
+		private final Account[] account;
+		private final Zipf zipf;
+		private final SplittableRandom random;
+		private final int depositBelow;
+		private final int withdrawBelow;
+		private final int weights;
+		private final double amount;
+
+		volatile boolean running = true;
+		volatile boolean measuring;
+
+		/**
+		 * Latency of deposits, withdrawals and reads in nanoseconds
+		 */
+		final Histogram[] latency = { new Histogram(), new Histogram(), new Histogram() };
+
+		Client(Workload workload, Account[] account, Zipf zipf, int index) {
+			this.account = account;
+			this.zipf = zipf;
+			this.random = new SplittableRandom(0x5DEECE66DL * (index + 1));
+			this.depositBelow = workload.getDepositWeight();
+			this.withdrawBelow = depositBelow + workload.getWithdrawWeight();
+			this.weights = withdrawBelow + workload.getReadWeight();
+			this.amount = workload.getAmount();
+		}
+
+		public void run() {
+			while (running) {
+				Account a = account[zipf.next(random)];
+				int pick = random.nextInt(weights);
+				int op = pick < depositBelow ? DEPOSIT : pick < withdrawBelow ? WITHDRAW : READ;
+
+				long start = System.nanoTime();
+				if (op == DEPOSIT)
+					a.deposit(amount);
+				else if (op == WITHDRAW)
+					a.withdraw(amount);
+				else
+					a.getBalance();
+				long end = System.nanoTime();
+
+				if (measuring)
+					latency[op].record(end - start);
+			}
+		}
+
+	}
+
+}
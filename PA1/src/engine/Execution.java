@@ -0,0 +1,226 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enum Execution
+ * How Depositor and Withdrawer tasks are run, selected by name on the
+ * command line or through the account.execution system property.
+ *
+ * Virtual threads need Java 21. Up to Java 23 a virtual thread that blocks
+ * inside a synchronized block pins its carrier thread, so there the
+ * monitor based strategies are refused in virtual mode; use reentrant,
+ * fair, stamped, seqlock or cas instead.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public enum Execution {
+
+	/** One platform thread per task, as the Thread based task packages do */
+	THREADS("threads") {
+		public ExecutorService newExecutor() {
+			return new ThreadPerTask();
+		}
+	},
+	/** One virtual thread per task */
+	VIRTUAL("virtual") {
+		public ExecutorService newExecutor() {
+			try {
+				// Looked up reflectively so the tree still builds on Java 17
+				return (ExecutorService) Executors.class
+						.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (NoSuchMethodException e) {
+				throw new UnsupportedOperationException("Virtual threads need Java 21 or later, this is "
+						+ Runtime.version());
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	},
+	/** A fixed pool with one platform thread per core */
+	POOL("pool") {
+		public ExecutorService newExecutor() {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		}
+	},
+	/** A ForkJoinPool with one worker per core */
+	FORKJOIN("forkjoin") {
+		public ExecutorService newExecutor() {
+			return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+	};
+
+	/**
+	 * System property naming the execution mode used when none is given
+	 */
+	public static final String PROPERTY = "account.execution";
+
+	/**
+	 * First Java release whose virtual threads do not pin inside monitors
+	 */
+	private static final int UNPINNED_MONITORS = 24;
+
+	private final String name;
+
+	Execution(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return a new executor running tasks the way this mode says
+	 * @throws UnsupportedOperationException if this JVM cannot do it
+	 */
+	public abstract ExecutorService newExecutor();
+
+	/**
+	 * Checks that this JVM supports the mode and that accounts guarded by
+	 * the given strategy can be used in it without pinning carrier threads.
+	 * @throws IllegalArgumentException if not
+	 */
+	public void check(SyncStrategy strategy) {
+		if (this == VIRTUAL && Runtime.version().feature() < 21)
+			throw new IllegalArgumentException("Virtual threads need Java 21 or later, this is "
+					+ Runtime.version());
+		if (this == VIRTUAL && strategy.usesMonitor()
+				&& Runtime.version().feature() < UNPINNED_MONITORS)
+			throw new IllegalArgumentException("Strategy " + strategy.getName()
+					+ " blocks in a monitor and would pin carrier threads on Java "
+					+ Runtime.version().feature() + "; use reentrant, fair, stamped, seqlock or cas");
+	}
+
+	/**
+	 * Runs all tasks in this mode and waits for them to finish.
+	 * @param tasks the tasks to run
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void runAll(List<? extends Runnable> tasks) throws InterruptedException {
+		ExecutorService executor = newExecutor();
+		List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+		try {
+			for (Runnable task : tasks)
+				futures.add(executor.submit(task));
+			for (Future<?> f : futures)
+				f.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Task failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Class ThreadPerTask
+	 * An executor that starts a new platform thread for every task and
+	 * never reuses one, unlike a cached pool, whose threads outlive their
+	 * tasks and pick up the next ones.
+	 */
+	private static final class ThreadPerTask extends AbstractExecutorService {
+		/**
+		 * Threads whose task has not finished, guarded by this
+		 */
+		private final Set<Thread> running = new HashSet<Thread>();
+		private boolean shutdown;
+
+		public void execute(final Runnable task) {
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						finished(Thread.currentThread());
+					}
+				}
+			});
+			synchronized (this) {
+				if (shutdown)
+					throw new RejectedExecutionException("Executor is shut down");
+				running.add(t);
+			}
+			t.start();
+		}
+
+		private synchronized void finished(Thread t) {
+			running.remove(t);
+			if (running.isEmpty())
+				notifyAll();
+		}
+
+		public synchronized void shutdown() {
+			shutdown = true;
+			notifyAll();
+		}
+
+		/**
+		 * Interrupts the running tasks; none is ever queued
+		 */
+		public synchronized List<Runnable> shutdownNow() {
+			shutdown();
+			for (Thread t : running)
+				t.interrupt();
+			return new ArrayList<Runnable>();
+		}
+
+		public synchronized boolean isShutdown() {
+			return shutdown;
+		}
+
+		public synchronized boolean isTerminated() {
+			return shutdown && running.isEmpty();
+		}
+
+		public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while (!isTerminated()) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0)
+					return false;
+				TimeUnit.NANOSECONDS.timedWait(this, left);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Looks a mode up by name.
+	 * @param name one of threads, virtual, pool, forkjoin
+	 * @return the mode
+	 * @throws IllegalArgumentException if there is no such mode
+	 */
+	public static Execution forName(String name) {
+		for (Execution e : values())
+			if (e.name.equalsIgnoreCase(name))
+				return e;
+		throw new IllegalArgumentException("Unknown execution mode: " + name
+				+ ", expected one of threads, virtual, pool, forkjoin");
+	}
+
+	/**
+	 * @return the mode named by the account.execution property, or THREADS
+	 */
+	public static Execution fromProperty() {
+		String name = System.getProperty(PROPERTY);
+		return name == null ? THREADS : forName(name);
+	}
+
+}
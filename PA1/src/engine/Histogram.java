@@ -0,0 +1,117 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Class Histogram
+ * A latency histogram in the style of HdrHistogram: values are counted in
+ * buckets that double in width, each split in 128 linear sub-buckets, so
+ * any recorded value is known to within 1% while the whole range of a long
+ * fits in a few thousand counters. Recording is a couple of shifts and an
+ * array increment; a histogram is not thread-safe, so every thread records
+ * into its own and they are added together at the end.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Histogram {
+
+	/**
+	 * log2 of the sub-bucket count of the first bucket
+	 */
+	private static final int SUB_BITS = 8;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int HALF_COUNT = SUB_COUNT / 2;
+
+	private final long[] counts = new long[(64 - SUB_BITS + 2) * HALF_COUNT];
+	private long total;
+	private long max;
+	private double sum;
+
+	/**
+	 * Counts one value
+	 * @param value a non-negative value, typically nanoseconds
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[index(value)]++;
+		total++;
+		sum += value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds all counts of another histogram to this one
+	 * @param other the histogram to add
+	 */
+	public void add(Histogram other) {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+		total += other.total;
+		sum += other.sum;
+		if (other.max > max)
+			max = other.max;
+	}
+
+	/**
+	 * Forgets every recorded value
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		total = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	public long getTotalCount() {
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return total == 0 ? 0 : sum / total;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value that falls in the same bucket as the value
+	 *         below which the given percentage of all values lie
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(max, highestValue(i));
+		}
+		return max;
+	}
+
+	private static int index(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+		return (shift + 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+	}
+
+	private static long highestValue(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int shift = index / HALF_COUNT - 1;
+		long low = (long) (index % HALF_COUNT + HALF_COUNT) << shift;
+		return low + (1L << shift) - 1;
+	}
+
+}
@@ -0,0 +1,337 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class History
+ * An append-only history of account transactions for statements, kept off
+ * the heap so that millions of records cost the garbage collector nothing.
+ *
+ * Every account has a backwards chain of blocks in direct byte buffers of
+ * 64 MB. A block holds the records of one account in three columns: the
+ * time in epoch milliseconds (long), the signed amount in cents (long) and
+ * the type (byte), about 17 bytes a record. The first block of an account
+ * holds 4 records and every next one twice as many as the one before, up
+ * to 256, so quiet accounts waste little and busy ones get long runs.
+ * Blocks are bump allocated and never freed.
+ *
+ * Appends to one account are serialized by one of a set of striped locks,
+ * which also keeps the times of an account from going backwards. A block
+ * publishes its records by a release store of its count, and the head of
+ * an account's chain by a release store too, so readers take no lock: a
+ * statement scan sees every record appended before it started and maybe
+ * some appended meanwhile. Within the range of a scan the records of an
+ * account come in time order; the start of the range is found by walking
+ * the chain back and binary searching the oldest block that reaches it.
+ *
+ * The account index and the off-heap memory have a fixed size. Records
+ * that do not fit are dropped and counted; a deposit never fails because
+ * its history is full.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class History {
+
+	/**
+	 * Receives the records of a scan, oldest first
+	 */
+	public interface Visitor {
+		void visit(long millis, byte type, long cents);
+	}
+
+	/** Record type: money paid in, positive amount */
+	public static final byte DEPOSIT = 1;
+	/** Record type: money taken out, negative amount */
+	public static final byte WITHDRAWAL = 2;
+	/** Record type: money moved in from another account, positive amount */
+	public static final byte TRANSFER_IN = 3;
+	/** Record type: money moved out to another account, negative amount */
+	public static final byte TRANSFER_OUT = 4;
+	/**
+	 * Record type: the balance was set, the amount being what that added
+	 * to it, so that like every other record it adds up in any order
+	 */
+	public static final byte SET = 5;
+
+	static final int SEGMENT_SHIFT = 26;
+	static final int SEGMENT = 1 << SEGMENT_SHIFT;
+	static final int FIRST_BLOCK = 4;
+	static final int MAX_BLOCK = 256;
+
+	/*
+	 * Block layout: previous block (long), count (int), capacity (int), then
+	 * capacity times, amounts and types
+	 */
+	private static final int PREV = 0;
+	private static final int COUNT = 8;
+	private static final int CAPACITY = 12;
+	private static final int HEADER = 16;
+
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.nativeOrder());
+	private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final ByteBuffer[] segments;
+	/**
+	 * Next free address; an address is segment << SEGMENT_SHIFT | offset,
+	 * and 0 is none
+	 */
+	private final AtomicLong next = new AtomicLong(HEADER);
+
+	/*
+	 * Open addressing index from account to chain. An entry is the key,
+	 * acc | USED, the head of the chain and the time of the last record,
+	 * side by side so that an append misses the cache once for all three.
+	 */
+	private static final long USED = 1L << 32;
+	private static final int KEY = 0;
+	private static final int HEAD = 1;
+	private static final int LAST = 2;
+	private static final int ENTRY_SHIFT = 2;
+	private final int mask;
+	private final long[] index;
+
+	private final ReentrantLock[] locks;
+	private final LongAdder records = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * @param maxAccounts the most accounts that get a history
+	 * @param maxBytes off-heap memory to use at most, in 64 MB segments
+	 */
+	public History(int maxAccounts, long maxBytes) {
+		if (maxAccounts < 1 || maxBytes < SEGMENT)
+			throw new IllegalArgumentException("Need 1 account and " + SEGMENT + " bytes at least");
+		int capacity = Integer.highestOneBit(Math.max(2, maxAccounts) * 2 - 1) * 2;
+		mask = capacity - 1;
+		index = new long[capacity << ENTRY_SHIFT];
+		segments = new ByteBuffer[(int) Math.min(Integer.MAX_VALUE, maxBytes >> SEGMENT_SHIFT)];
+		int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 16 - 1) * 2;
+		locks = new ReentrantLock[stripes];
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Appends one record of an account, timed now.
+	 * @param type DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT or SET
+	 * @param cents the amount, negative when money goes out
+	 */
+	public void append(int acc, byte type, long cents) {
+		int e = entry(acc, true);
+		if (e < 0) {
+			dropped.increment();
+			return;
+		}
+		ReentrantLock lock = locks[(e >>> ENTRY_SHIFT) & (locks.length - 1)];
+		lock.lock();
+		try {
+			long millis = Math.max(System.currentTimeMillis(), index[e + LAST]);
+			long block = index[e + HEAD];
+			int count = 0;
+			int capacity = 0;
+			if (block != 0) {
+				count = (int) INTS.get(segment(block), offset(block) + COUNT);
+				capacity = segment(block).getInt(offset(block) + CAPACITY);
+			}
+			if (count == capacity) {
+				int size = block == 0 ? FIRST_BLOCK : Math.min(MAX_BLOCK, capacity * 2);
+				long fresh = allocate(size);
+				if (fresh == 0) {
+					dropped.increment();
+					return;
+				}
+				ByteBuffer b = segment(fresh);
+				int o = offset(fresh);
+				b.putLong(o + PREV, block);
+				b.putInt(o + CAPACITY, size);
+				INTS.setRelease(b, o + COUNT, 0);
+				// The block is complete before the chain points to it
+				LONGS.setRelease(index, e + HEAD, fresh);
+				block = fresh;
+				count = 0;
+				capacity = size;
+			}
+			ByteBuffer b = segment(block);
+			int o = offset(block);
+			int times = o + HEADER;
+			b.putLong(times + count * 8, millis);
+			b.putLong(times + capacity * 8 + count * 8, cents);
+			b.put(times + capacity * 16 + count, type);
+			INTS.setRelease(b, o + COUNT, count + 1);
+			index[e + LAST] = millis;
+		} finally {
+			lock.unlock();
+		}
+		records.increment();
+	}
+
+	/**
+	 * Visits the records of an account with times in [fromMillis, toMillis),
+	 * oldest first. Takes no lock and allocates only a small array of block
+	 * addresses.
+	 * @return the number of records visited
+	 */
+	public int scan(int acc, long fromMillis, long toMillis, Visitor visitor) {
+		int e = entry(acc, false);
+		if (e < 0 || fromMillis >= toMillis)
+			return 0;
+		// Walk back to the oldest block that reaches fromMillis
+		long[] chain = new long[8];
+		int depth = 0;
+		long block = (long) LONGS.getAcquire(index, e + HEAD);
+		while (block != 0) {
+			if (depth == chain.length)
+				chain = Arrays.copyOf(chain, depth * 2);
+			chain[depth++] = block;
+			ByteBuffer b = segment(block);
+			int o = offset(block);
+			if ((int) INTS.getAcquire(b, o + COUNT) > 0 && b.getLong(o + HEADER) < fromMillis)
+				break;
+			block = b.getLong(o + PREV);
+		}
+		int visited = 0;
+		for (int d = depth - 1; d >= 0; d--) {
+			ByteBuffer b = segment(chain[d]);
+			int o = offset(chain[d]);
+			int count = (int) INTS.getAcquire(b, o + COUNT);
+			int capacity = b.getInt(o + CAPACITY);
+			int times = o + HEADER;
+			int amounts = times + capacity * 8;
+			int types = amounts + capacity * 8;
+			int i = d == depth - 1 ? firstAtOrAfter(b, times, count, fromMillis) : 0;
+			for (; i < count; i++) {
+				long millis = b.getLong(times + i * 8);
+				if (millis >= toMillis)
+					return visited;
+				visitor.visit(millis, b.get(types + i), b.getLong(amounts + i * 8));
+				visited++;
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * @return the net amount of the records of an account in the range:
+	 *         how much they changed its balance
+	 */
+	public long netCents(int acc, long fromMillis, long toMillis) {
+		final long[] sum = new long[1];
+		scan(acc, fromMillis, toMillis, (millis, type, cents) -> sum[0] += cents);
+		return sum[0];
+	}
+
+	/**
+	 * @return the records appended so far
+	 */
+	public long getRecords() {
+		return records.sum();
+	}
+
+	/**
+	 * @return the records dropped because the index or memory was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return off-heap bytes taken by blocks so far
+	 */
+	public long getBytesUsed() {
+		// An address is also the bytes before it
+		return next.get();
+	}
+
+	/**
+	 * @return the start of the index entry of an account, added if asked
+	 *         to, or -1
+	 */
+	private int entry(int acc, boolean add) {
+		long key = (acc & 0xFFFFFFFFL) | USED;
+		int h = acc * 0x9E3779B9;
+		for (int probe = 0; probe <= mask; probe++) {
+			int i = ((h + probe) & mask) << ENTRY_SHIFT;
+			long k = (long) LONGS.getAcquire(index, i + KEY);
+			if (k == key)
+				return i;
+			if (k == 0) {
+				if (!add)
+					return -1;
+				if (LONGS.compareAndSet(index, i + KEY, 0L, key))
+					return i;
+				if ((long) LONGS.getAcquire(index, i + KEY) == key)
+					return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Bump allocates a block in the current segment, or at the start of the
+	 * next one if it does not fit
+	 * @return its address, or 0 if the memory is used up
+	 */
+	private long allocate(int capacity) {
+		int size = (HEADER + capacity * 17 + 7) & ~7;
+		while (true) {
+			long at = next.get();
+			long start = at;
+			if ((at >> SEGMENT_SHIFT) != ((at + size - 1) >> SEGMENT_SHIFT))
+				start = ((at >> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+			int s = (int) (start >> SEGMENT_SHIFT);
+			if (s >= segments.length)
+				return 0;
+			if (next.compareAndSet(at, start + size)) {
+				ensureSegment(s);
+				return start;
+			}
+		}
+	}
+
+	/**
+	 * Allocates a segment on its first use. Readers only get to a segment
+	 * through a block published after this.
+	 */
+	private synchronized void ensureSegment(int s) {
+		if (segments[s] == null)
+			segments[s] = ByteBuffer.allocateDirect(SEGMENT).order(ByteOrder.nativeOrder());
+	}
+
+	private ByteBuffer segment(long address) {
+		return segments[(int) (address >> SEGMENT_SHIFT)];
+	}
+
+	private static int offset(long address) {
+		return (int) (address & (SEGMENT - 1));
+	}
+
+	/**
+	 * @return the index of the first record at or after millis in a block
+	 */
+	private static int firstAtOrAfter(ByteBuffer b, int times, int count, long millis) {
+		int lo = 0;
+		int hi = count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (b.getLong(times + mid * 8) < millis)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+}
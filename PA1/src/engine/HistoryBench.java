@@ -0,0 +1,167 @@
+package engine;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * Class HistoryBench
+ * Measures what a History costs deposits and withdrawals, and how fast it
+ * gives statements. Threads deposit into and withdraw from random cas
+ * accounts without and with a history, counting the collections the
+ * garbage collector makes meanwhile. Then statements over the second half
+ * of the run are scanned for random accounts, and for a sample of accounts
+ * the net of their whole history is checked against their balance.
+ *
+ * ns/update is the time of one update on one core: with more threads than
+ * cores the threads take turns.
+ *
+ * Usage: java engine.HistoryBench [accounts [threads [seconds]]]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class HistoryBench {
+
+	private static final long MEMORY = 1L << 30;
+	private static final int STATEMENTS = 10000;
+	private static final int CHECKED = 1000;
+
+	public static void main(String[] args) throws InterruptedException {
+		int n;
+		int threads;
+		double seconds;
+		try {
+			n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+			threads = args.length > 1 ? Integer.parseInt(args[1])
+					: Math.max(2, Runtime.getRuntime().availableProcessors());
+			seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+			if (n < 1 || threads < 1 || seconds <= 0)
+				throw new IllegalArgumentException("Accounts, threads and seconds must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d accounts, %d threads, %d cores, %d MB off-heap%n", n, threads, cores, MEMORY >> 20);
+
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;
+			if (!print)
+				System.out.println("Warming up");
+			else
+				System.out.printf("%-10s %14s %10s %12s %10s %6s %12s %12s  %s%n", "history", "updates/s",
+						"ns/update", "records", "B/record", "GCs", "statement", "records/s", "after the run");
+			for (int mode = 0; mode < 2; mode++) {
+				Account[] account = new Account[n];
+				long[] opening = new long[n];
+				for (int i = 0; i < n; i++) {
+					account[i] = new Account(1000 + i, "Customer" + i, 1000 + i % 997, Strategies.CAS);
+					opening[i] = Math.round(account[i].getBalance() * 100);
+				}
+				History history = mode == 0 ? null : new History(n, MEMORY);
+				for (Account a : account)
+					a.setHistory(history);
+
+				System.gc();
+				long gcs = collections();
+				Updater[] u = new Updater[threads];
+				for (int i = 0; i < threads; i++)
+					u[i] = new Updater(account, i);
+				long from = System.currentTimeMillis();
+				long start = System.nanoTime();
+				for (Updater x : u)
+					x.start();
+				Thread.sleep((long) (seconds * 1000));
+				long ops = 0;
+				for (Updater x : u) {
+					x.running = false;
+					x.join();
+					ops += x.ops;
+				}
+				double elapsed = (System.nanoTime() - start) / 1e9;
+				long to = System.currentTimeMillis() + 1;
+				gcs = collections() - gcs;
+
+				String name = mode == 0 ? "none" : "off-heap";
+				String records = "-";
+				String perRecord = "-";
+				String statement = "-";
+				String rate = "-";
+				String check = "";
+				if (history != null) {
+					records = Long.toString(history.getRecords());
+					perRecord = String.format("%.1f", history.getBytesUsed() / (double) history.getRecords());
+
+					SplittableRandom random = new SplittableRandom(42);
+					long half = from + (to - from) / 2;
+					long visited = 0;
+					final long[] sum = new long[1];
+					History.Visitor visitor = (millis, type, cents) -> sum[0] += cents;
+					long t = System.nanoTime();
+					for (int q = 0; q < STATEMENTS; q++)
+						visited += history.scan(1000 + random.nextInt(n), half, to, visitor);
+					double nanos = System.nanoTime() - t;
+					statement = String.format("%.2f us", nanos / 1e3 / STATEMENTS);
+					rate = String.format("%.0f", visited / (nanos / 1e9));
+
+					boolean adds = history.getDropped() == 0;
+					for (int q = 0; adds && q < Math.min(n, CHECKED); q++) {
+						int i = random.nextInt(n);
+						long net = history.netCents(1000 + i, 0, Long.MAX_VALUE);
+						adds = net == Math.round(account[i].getBalance() * 100) - opening[i];
+					}
+					check = adds ? "histories add up" : "HISTORIES DO NOT ADD UP";
+					if (history.getDropped() > 0)
+						check += ", " + history.getDropped() + " dropped";
+				}
+				if (print)
+					System.out.printf("%-10s %14.0f %10.1f %12s %10s %6d %12s %12s  %s%n", name, ops / elapsed,
+							elapsed * 1e9 * Math.min(threads, cores) / ops, records, perRecord, gcs, statement, rate,
+							check);
+			}
+		}
+	}
+
+	private static long collections() {
+		long sum = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			sum += Math.max(0, gc.getCollectionCount());
+		return sum;
+	}
+
+	/**
+	 * Deposits into and withdraws from random accounts
+	 */
+	private static class Updater extends Thread {
+		private final Account[] account;
+		private final int seed;
+		volatile boolean running = true;
+		long ops;
+
+		Updater(Account[] account, int seed) {
+			this.account = account;
+			this.seed = seed;
+		}
+
+		public void run() {
+			SplittableRandom random = new SplittableRandom(seed);
+			long k = 0;
+			while (running) {
+				Account a = account[random.nextInt(account.length)];
+				if (random.nextBoolean())
+					a.deposit(random.nextInt(1, 100));
+				else
+					a.tryWithdraw(random.nextInt(1, 100));
+				k++;
+			}
+			ops = k;
+		}
+	}
+
+}
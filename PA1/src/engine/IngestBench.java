@@ -0,0 +1,91 @@
+package engine;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class IngestBench
+ * Pushes a burst of random transactions as fast as one producer can
+ * through a SubmissionPublisher into an IngestSubscriber, and reports the
+ * rate, how many transactions were ever in flight, how much netting saved,
+ * and whether the accounts hold exactly what was sent. The publisher's
+ * buffer is bounded, so its submit() blocks the producer once the
+ * subscriber stops asking for more.
+ *
+ * Usage: java engine.IngestBench [transactions [accounts [partitions [max in flight]]]]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class IngestBench {
+
+	private static final int PUBLISHER_BUFFER = 1024;
+
+	public static void main(String[] args) throws InterruptedException {
+		int transactions;
+		int accounts;
+		int partitions;
+		int maxInFlight;
+		try {
+			transactions = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+			accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+			partitions = args.length > 2 ? Integer.parseInt(args[2])
+					: Math.max(2, Runtime.getRuntime().availableProcessors());
+			maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : 8192;
+			if (transactions < 1 || accounts < 1)
+				throw new IllegalArgumentException("Transactions and accounts must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		Account[] account = new Account[accounts];
+		for (int i = 0; i < accounts; i++)
+			account[i] = new Account(1000 + i, "Customer" + i, 1000, Strategies.CAS);
+		IngestSubscriber subscriber = new IngestSubscriber(account, partitions, maxInFlight);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		long sent = 0;
+		long start = System.nanoTime();
+		try (SubmissionPublisher<Transaction> publisher = new SubmissionPublisher<Transaction>(executor,
+				PUBLISHER_BUFFER)) {
+			publisher.subscribe(subscriber);
+			SplittableRandom random = new SplittableRandom(42);
+			for (int i = 0; i < transactions; i++) {
+				int acc = 1000 + random.nextInt(accounts);
+				int cents = random.nextInt(1, 10000);
+				if (random.nextBoolean())
+					cents = -cents;
+				sent += cents;
+				publisher.submit(new Transaction(acc, cents / 100.0));
+			}
+		}
+		subscriber.awaitCompletion(1, TimeUnit.MINUTES);
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+
+		long total = 0;
+		for (Account a : account)
+			total += Math.round(a.getBalance() * 100);
+		double rate = subscriber.getApplied() / (elapsed / 1e9);
+		System.out.printf("%d transactions on %d accounts, %d partitions, at most %d in flight%n",
+				transactions, accounts, partitions, maxInFlight);
+		System.out.printf("%.0f transactions/s, peak in flight %d (at most %.2f ms queued), %.1f transactions per update%n",
+				rate, subscriber.getPeakInFlight(), 1e3 * subscriber.getPeakInFlight() / rate,
+				subscriber.getNettingRatio());
+		System.out.printf("Never more than %d transactions buffered between producer and accounts%n",
+				PUBLISHER_BUFFER + subscriber.getPeakInFlight());
+		long expected = 100000L * accounts + sent;
+		System.out.printf("Total %.2f, expected %.2f: %s%n", total / 100.0, expected / 100.0,
+				total == expected ? "match" : "DO NOT MATCH");
+	}
+
+}
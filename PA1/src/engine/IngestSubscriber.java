@@ -0,0 +1,262 @@
+package engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class IngestSubscriber
+ * Feeds a stream of Transactions from any Flow.Publisher into accounts.
+ *
+ * Transactions are partitioned by account number over a fixed number of
+ * worker threads, each with its own Mailbox, so the transactions of one
+ * account are applied by one worker, in order. A worker drains its mailbox
+ * in micro-batches, nets the amounts per account within a batch and makes
+ * one deposit or withdrawal per account and batch.
+ *
+ * Backpressure is by demand: the subscriber never requests more than
+ * maxInFlight transactions beyond those applied, and it requests more in
+ * steps of a quarter of that as workers finish batches. A burst upstream
+ * therefore waits in the publisher, which can slow its producer down,
+ * instead of piling up here; memory use is bounded by maxInFlight.
+ * Workers hand demand back concurrently, but only one thread at a time
+ * calls the subscription's request, as Flow requires: a thread that finds
+ * another one requesting leaves its demand for that one to pass on.
+ *
+ * Transactions for unknown accounts are counted as rejected and dropped.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class IngestSubscriber implements Flow.Subscriber<Transaction> {
+
+	private final Map<Integer, Integer> slots = new HashMap<Integer, Integer>();
+	private final Partition[] partition;
+	private final int maxInFlight;
+	private final int requestStep;
+
+	private volatile Flow.Subscription subscription;
+	private final AtomicInteger credit = new AtomicInteger();
+	private final AtomicInteger requesting = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int peakInFlight;
+	private volatile boolean done;
+	private volatile Throwable error;
+	private final CountDownLatch finished;
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Starts one worker per partition.
+	 * @param accounts the accounts transactions are applied to
+	 * @param partitions number of worker threads
+	 * @param maxInFlight most transactions requested but not yet applied
+	 */
+	public IngestSubscriber(Account[] accounts, int partitions, int maxInFlight) {
+		if (partitions < 1 || maxInFlight < 4)
+			throw new IllegalArgumentException("Need at least 1 partition and 4 in flight");
+		this.maxInFlight = maxInFlight;
+		this.requestStep = maxInFlight / 4;
+		int[] count = new int[partitions];
+		for (Account a : accounts)
+			count[Math.floorMod(a.getAcc(), partitions)]++;
+		partition = new Partition[partitions];
+		for (int p = 0; p < partitions; p++)
+			partition[p] = new Partition(p, count[p], maxInFlight);
+		for (Account a : accounts) {
+			int p = Math.floorMod(a.getAcc(), partitions);
+			int local = partition[p].add(a);
+			if (slots.put(a.getAcc(), local * partitions + p) != null)
+				throw new IllegalArgumentException("Account " + a.getAcc() + " given twice");
+		}
+		finished = new CountDownLatch(partitions);
+		for (Partition p : partition)
+			p.start();
+	}
+
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		credit(maxInFlight);
+	}
+
+	/**
+	 * Never blocks: at most maxInFlight transactions are outstanding and
+	 * every mailbox can hold that many.
+	 */
+	public void onNext(Transaction t) {
+		Integer slot = slots.get(t.getAcc());
+		if (slot == null) {
+			rejected.incrementAndGet();
+			credit(1);
+			return;
+		}
+		int n = inFlight.incrementAndGet();
+		if (n > peakInFlight)
+			peakInFlight = n;
+		int p = slot % partition.length;
+		partition[p].mailbox.offer(slot / partition.length, t.getAmount());
+	}
+
+	public void onError(Throwable throwable) {
+		error = throwable;
+		done = true;
+	}
+
+	public void onComplete() {
+		done = true;
+	}
+
+	/**
+	 * Waits until the publisher has completed or failed and every
+	 * transaction received has been applied.
+	 * @return false if the time ran out first
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	/**
+	 * @return the error the publisher failed with, or null
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	public long getApplied() {
+		long n = 0;
+		for (Partition p : partition)
+			n += p.applied;
+		return n;
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the most transactions that were ever received but not applied
+	 */
+	public int getPeakInFlight() {
+		return peakInFlight;
+	}
+
+	/**
+	 * @return transactions per account update: how much netting saved
+	 */
+	public double getNettingRatio() {
+		long updates = 0;
+		for (Partition p : partition)
+			updates += p.updates;
+		return updates == 0 ? 0 : (double) getApplied() / updates;
+	}
+
+	/**
+	 * Hands back demand for applied or dropped transactions, in steps. The
+	 * thread that finds requesting at zero requests for every thread that
+	 * comes meanwhile, until it counts no more of them.
+	 */
+	private void credit(int n) {
+		if (credit.addAndGet(n) < requestStep || requesting.getAndIncrement() != 0)
+			return;
+		int missed = 1;
+		do {
+			if (credit.get() >= requestStep) {
+				int c = credit.getAndSet(0);
+				if (c > 0)
+					subscription.request(c);
+			}
+			missed = requesting.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * One worker: the only thread applying transactions to its accounts
+	 */
+	private final class Partition extends Thread implements Mailbox.Consumer {
+		private final Account[] accounts;
+		private final double[] net;
+		private final boolean[] marked;
+		private final int[] touched;
+		private int touchedCount;
+		private int size;
+		final Mailbox mailbox;
+		/*
+		 * Written by this worker only
+		 */
+		volatile long applied;
+		long updates;
+
+		Partition(int index, int accounts, int capacity) {
+			super("ingest-" + index);
+			setDaemon(true);
+			this.accounts = new Account[accounts];
+			this.net = new double[accounts];
+			this.marked = new boolean[accounts];
+			this.touched = new int[accounts];
+			this.mailbox = new Mailbox(capacity);
+		}
+
+		int add(Account a) {
+			accounts[size] = a;
+			return size++;
+		}
+
+		public void run() {
+			int idle = 0;
+			while (true) {
+				int n = mailbox.drain(this, MailboxEngine.BATCH);
+				if (n > 0) {
+					flush();
+					applied += n;
+					inFlight.addAndGet(-n);
+					credit(n);
+					idle = 0;
+				} else if (done && mailbox.isEmpty()) {
+					finished.countDown();
+					return;
+				} else {
+					idle = Mailbox.backOff(idle);
+				}
+			}
+		}
+
+		public void apply(int local, double delta) {
+			if (!marked[local]) {
+				marked[local] = true;
+				touched[touchedCount++] = local;
+			}
+			net[local] += delta;
+		}
+
+		/**
+		 * Applies the netted amounts of one batch, one update per account
+		 */
+		private void flush() {
+			for (int i = 0; i < touchedCount; i++) {
+				int local = touched[i];
+				double amount = net[local];
+				net[local] = 0;
+				marked[local] = false;
+				if (amount > 0)
+					accounts[local].deposit(amount);
+				else if (amount < 0)
+					accounts[local].withdraw(-amount);
+			}
+			updates += touchedCount;
+			touchedCount = 0;
+		}
+	}
+
+}
@@ -0,0 +1,556 @@
+package engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class Journal
+ * An append-only write-ahead journal of account mutations, kept in
+ * memory-mapped segment files named segment-NNNNNNNN.log in one directory.
+ *
+ * Every mutation is one 16 byte record: the amount in cents (long), the
+ * account number (int), the record type (short) and a 16 bit check (short).
+ * The journal is split into stripes, each writing its own segments, and
+ * an account always goes to the same stripe, so appenders of different
+ * accounts seldom wait for each other. Appending is a bump of the write
+ * position and three stores into the stripe's segment under its lock;
+ * nothing is written to disk there. Segment numbers are shared by the
+ * stripes and only grow, also over restarts, so the records of an account
+ * are in segment order.
+ *
+ * A flusher thread forces the written part of every stripe to disk every
+ * flush interval, or as soon as a SYNC appender is waiting, so one force
+ * covers every record appended since the last one (group commit).
+ *
+ * With ASYNC durability an append returns at once and at most one flush
+ * interval of mutations is lost on a crash. With SYNC durability an append
+ * returns once its record is on disk. Account makes a change and writes
+ * its record under the stripe lock, so the records of an account are in
+ * the order of its changes, and waits for SYNC durability after.
+ *
+ * replay() reads all segments in order and stops in each at the first
+ * record whose check does not match, which is where the segment ends or
+ * where a crash cut a record short.
+ *
+ * A position is the segment number in the high and the end of a record
+ * in the segment in the low 32 bits, so the positions of the records of
+ * an account only grow. Every account keeps the position of its last
+ * record, and a Snapshot stores it with the balance; restoring the
+ * snapshot applies only the records of each account past its position.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Journal implements AutoCloseable {
+
+	/**
+	 * When an append may return
+	 */
+	public enum Durability { ASYNC, SYNC }
+
+	/**
+	 * Receives the records of a journal being replayed
+	 */
+	public interface Replayer {
+		/**
+		 * @param position where the record ends in the journal
+		 */
+		void replay(int acc, short type, long cents, long position);
+	}
+
+	/**
+	 * Where the records of a journal are restored to
+	 */
+	public interface Target {
+		/**
+		 * @return the account to apply a record of acc ending at position
+		 *         to, or null if there is none or its balance holds the
+		 *         record already
+		 */
+		Account get(int acc, long position);
+	}
+
+	/** Record type: the amount is added to the balance */
+	public static final short DELTA = 1;
+	/** Record type: the balance is set to the amount */
+	public static final short SET = 2;
+
+	static final int RECORD_SIZE = 16;
+
+	private static final String PREFIX = "segment-";
+	private static final String SUFFIX = ".log";
+
+	private final Path directory;
+	private final int segmentSize;
+	private final Durability durability;
+	private final long flushIntervalNanos;
+
+	private final AtomicInteger nextSegment;
+	private final Stripe[] stripes;
+	private volatile boolean closed;
+
+	/*
+	 * Wakes the flusher: requests counts the SYNC appenders that asked for
+	 * a force, guarded by flushLock
+	 */
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private final Condition work = flushLock.newCondition();
+	private long requests;
+
+	private final Thread flusher;
+
+	/**
+	 * Opens a journal that appends to new segments after any existing ones,
+	 * with a stripe per core.
+	 *
+	 * @param directory where the segments are, created if needed
+	 * @param segmentSize bytes per segment file, a multiple of 16
+	 * @param durability when appends return
+	 * @param flushIntervalMillis longest time between two forces
+	 * @throws IOException if the directory or first segments cannot be created
+	 */
+	public Journal(Path directory, int segmentSize, Durability durability, long flushIntervalMillis)
+			throws IOException {
+		this(directory, segmentSize, durability, flushIntervalMillis, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes segments written at the same time, rounded up to a
+	 *        power of two
+	 */
+	public Journal(Path directory, int segmentSize, Durability durability, long flushIntervalMillis, int stripes)
+			throws IOException {
+		if (segmentSize <= 0 || segmentSize % RECORD_SIZE != 0)
+			throw new IllegalArgumentException("Segment size must be a positive multiple of "
+					+ RECORD_SIZE + ": " + segmentSize);
+		if (stripes < 1 || stripes > 1 << 16)
+			throw new IllegalArgumentException("Stripes must be 1 to 65536: " + stripes);
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.durability = durability;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+		List<Path> existing = segments(directory);
+		nextSegment = new AtomicInteger(existing.isEmpty() ? 0 : index(existing.get(existing.size() - 1)) + 1);
+		this.stripes = new Stripe[Integer.highestOneBit(stripes * 2 - 1)];
+		for (int i = 0; i < this.stripes.length; i++)
+			this.stripes[i] = new Stripe();
+
+		flusher = new Thread(this::flushLoop, "journal-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * Appends one record, and with SYNC durability waits until it is on disk.
+	 * @param acc the account number
+	 * @param type DELTA or SET
+	 * @param cents the amount in cents
+	 * @throws IllegalStateException if the journal is closed
+	 * @throws UncheckedIOException if a new segment cannot be created
+	 */
+	public void append(int acc, short type, long cents) {
+		awaitDurable(acc, write(acc, type, cents));
+	}
+
+	/**
+	 * Appends one record without waiting for the disk. Records of one
+	 * account are replayed in the order they were written.
+	 * @return the position of the record, to wait for with awaitDurable
+	 * @throws IllegalStateException if the journal is closed
+	 * @throws UncheckedIOException if a new segment cannot be created
+	 */
+	public long write(int acc, short type, long cents) {
+		Stripe s = stripe(acc);
+		s.lock.lock();
+		try {
+			return s.append(acc, type, cents);
+		} finally {
+			s.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the lock the records of an account are written under. Held
+	 *         across a change of the account and writeHeld, it keeps the
+	 *         records of the account in the order of its changes.
+	 */
+	ReentrantLock lockOf(int acc) {
+		return stripe(acc).lock;
+	}
+
+	/**
+	 * write, called holding lockOf(acc)
+	 */
+	long writeHeld(int acc, short type, long cents) {
+		return stripe(acc).append(acc, type, cents);
+	}
+
+	/**
+	 * With SYNC durability waits until a record written by write is on
+	 * disk, or the journal is closed; with ASYNC durability returns at once.
+	 * @param acc the account of the record
+	 * @param position what write returned
+	 */
+	public void awaitDurable(int acc, long position) {
+		if (durability != Durability.SYNC)
+			return;
+		Stripe s = stripe(acc);
+		if (s.durable >= position)
+			return;
+		flushLock.lock();
+		try {
+			requests++;
+			work.signal();
+		} finally {
+			flushLock.unlock();
+		}
+		s.lock.lock();
+		try {
+			while (s.durable < position && !s.shut)
+				s.flushed.awaitUninterruptibly();
+		} finally {
+			s.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return a position that only records written before this call are
+	 *         at or before: the least current position of the stripes.
+	 *         A checkpoint that starts after this call holds them all.
+	 */
+	public long getPosition() {
+		long min = Long.MAX_VALUE;
+		for (Stripe s : stripes) {
+			s.lock.lock();
+			try {
+				min = Math.min(min, s.position());
+			} finally {
+				s.lock.unlock();
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Forces everything appended so far to disk.
+	 */
+	public void flush() {
+		for (Stripe s : stripes) {
+			s.lock.lock();
+			try {
+				s.forceWritten();
+			} finally {
+				s.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Flushes, stops the flusher and closes the current segments.
+	 */
+	public void close() throws IOException {
+		flushLock.lock();
+		try {
+			if (closed)
+				return;
+			closed = true;
+			work.signal();
+		} finally {
+			flushLock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Appends that got their stripe lock before closed was set are done
+		for (Stripe s : stripes) {
+			s.lock.lock();
+			try {
+				s.forceWritten();
+				s.shut = true;
+				s.flushed.signalAll();
+				s.channel.close();
+			} finally {
+				s.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Reads every record of every segment in a directory, oldest first.
+	 * @return the number of records replayed
+	 */
+	public static long replay(Path directory, Replayer replayer) throws IOException {
+		return replay(directory, 0, replayer);
+	}
+
+	/**
+	 * Reads the records of a directory that end past a position, oldest
+	 * first, skipping the segments before it.
+	 * @return the number of records replayed
+	 */
+	public static long replay(Path directory, long after, Replayer replayer) throws IOException {
+		long records = 0;
+		if (!Files.isDirectory(directory))
+			return 0;
+		for (Path p : segments(directory)) {
+			long index = index(p);
+			if (index < after >>> 32)
+				continue;
+			try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+				MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+				for (int offset = 0; offset + RECORD_SIZE <= buf.limit(); offset += RECORD_SIZE) {
+					long cents = buf.getLong(offset);
+					int acc = buf.getInt(offset + 8);
+					short type = buf.getShort(offset + 12);
+					if (buf.getShort(offset + 14) != check(acc, type, cents))
+						break;
+					long position = index << 32 | (offset + RECORD_SIZE);
+					if (position <= after)
+						continue;
+					replayer.replay(acc, type, cents, position);
+					records++;
+				}
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Rebuilds balances from a journal: the accounts keep their opening
+	 * balances and every record of the journal is applied on top of them.
+	 * Records of account numbers not among the accounts are skipped.
+	 * @return the number of records applied
+	 */
+	public static long restore(Path directory, Account[] accounts) throws IOException {
+		final Map<Integer, Account> byAcc = new HashMap<Integer, Account>();
+		for (Account a : accounts)
+			byAcc.put(a.getAcc(), a);
+		return restore(directory, 0, new Target() {
+			public Account get(int acc, long position) {
+				return byAcc.get(acc);
+			}
+		});
+	}
+
+	/**
+	 * Rebuilds balances on top of a checkpoint: every record past a
+	 * position is applied to the account the target gives for it.
+	 * @param after the journal position of the checkpoint, or 0
+	 * @return the number of records applied
+	 */
+	public static long restore(Path directory, long after, final Target target) throws IOException {
+		final long[] applied = new long[1];
+		replay(directory, after, new Replayer() {
+			public void replay(int acc, short type, long cents, long position) {
+				Account a = target.get(acc, position);
+				if (a != null) {
+					a.restore(type, cents, position);
+					applied[0]++;
+				}
+			}
+		});
+		return applied[0];
+	}
+
+	/**
+	 * The flusher: forces the written records of every stripe whenever a
+	 * SYNC appender asks for it or the flush interval has passed.
+	 */
+	private void flushLoop() {
+		long seen = 0;
+		while (!closed) {
+			flushLock.lock();
+			try {
+				if (requests == seen && !closed)
+					work.awaitNanos(flushIntervalNanos);
+				seen = requests;
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				flushLock.unlock();
+			}
+			for (Stripe s : stripes)
+				s.flush();
+		}
+	}
+
+	private Stripe stripe(int acc) {
+		int h = acc * 0x9E3779B9;
+		return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+	}
+
+	/**
+	 * Class Stripe
+	 * The segment one share of the accounts is appended to, with the
+	 * lock that orders their appends.
+	 */
+	private final class Stripe {
+
+		final ReentrantLock lock = new ReentrantLock();
+		final Condition flushed = lock.newCondition();
+
+		/*
+		 * Guarded by lock. A position is the segment number in the high
+		 * and the end of a record in the low 32 bits.
+		 */
+		FileChannel channel;
+		MappedByteBuffer segment;
+		int index;
+		int written;
+		volatile long durable;
+		boolean shut;
+
+		Stripe() throws IOException {
+			openSegment();
+		}
+
+		long position() {
+			return (long) index << 32 | written;
+		}
+
+		/**
+		 * Called with the lock held
+		 * @return the position of the record
+		 */
+		long append(int acc, short type, long cents) {
+			if (closed)
+				throw new IllegalStateException("Journal is closed");
+			try {
+				if (written == segmentSize)
+					roll();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			int offset = written;
+			segment.putLong(offset, cents);
+			segment.putInt(offset + 8, acc);
+			segment.putShort(offset + 12, type);
+			segment.putShort(offset + 14, check(acc, type, cents));
+			written += RECORD_SIZE;
+			return position();
+		}
+
+		/**
+		 * Forces the written part of the segment that is not durable yet.
+		 * The force runs without the lock, so appenders keep going while
+		 * the disk catches up.
+		 */
+		void flush() {
+			lock.lock();
+			try {
+				long end = position();
+				if (durable >= end)
+					return;
+				MappedByteBuffer buf = segment;
+				int from = from();
+				lock.unlock();
+				try {
+					// Still valid if the segment is rolled meanwhile
+					buf.force(from, (int) end - from);
+				} finally {
+					lock.lock();
+				}
+				if (end > durable) {
+					durable = end;
+					flushed.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Forces the written but not yet durable part of the segment.
+		 * Called with the lock held; earlier segments were forced when
+		 * rolled.
+		 */
+		void forceWritten() {
+			long end = position();
+			if (durable >= end)
+				return;
+			int from = from();
+			segment.force(from, written - from);
+			durable = end;
+			flushed.signalAll();
+		}
+
+		void roll() throws IOException {
+			forceWritten();
+			channel.close();
+			openSegment();
+		}
+
+		/**
+		 * @return the offset in the segment from which it is not durable
+		 */
+		private int from() {
+			return (int) (durable >>> 32) == index ? (int) durable : 0;
+		}
+
+		private void openSegment() throws IOException {
+			index = nextSegment.getAndIncrement();
+			Path p = directory.resolve(String.format("%s%08d%s", PREFIX, index, SUFFIX));
+			channel = FileChannel.open(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			written = 0;
+		}
+	}
+
+	private static List<Path> segments(Path directory) throws IOException {
+		List<Path> list = new ArrayList<Path>();
+		if (!Files.isDirectory(directory))
+			return list;
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path p : ds)
+				list.add(p);
+		}
+		// Fixed width indexes, so name order is segment order
+		Collections.sort(list);
+		return list;
+	}
+
+	private static int index(Path segment) {
+		String name = segment.getFileName().toString();
+		return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * A check that is never 0, so the zeroes after the last record of a
+	 * segment never pass for a record
+	 */
+	private static short check(int acc, short type, long cents) {
+		long h = cents * 0x9E3779B97F4A7C15L + acc * 0xC2B2AE3DL + type;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 32;
+		return (short) (h | 1);
+	}
+
+}
@@ -0,0 +1,125 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Class JournalBench
+ * Measures what the journal costs: the same deposit/withdraw load runs on
+ * accounts without a journal, with an ASYNC journal and with a SYNC
+ * journal. Now and then a thread sets a balance, racing with the others.
+ * After each journaled run a fresh set of accounts is restored from the
+ * segments and compared with the accounts that took the load.
+ *
+ * Usage: java engine.JournalBench [directory [threads [seconds [stripes]]]]
+ * The directory defaults to a new temporary one; each run uses its own
+ * subdirectory in it.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class JournalBench {
+
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final long FLUSH_MILLIS = 10;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path dir = args.length > 0 ? Paths.get(args[0]) : Files.createTempDirectory("journal");
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+		int stripes = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		System.out.println("Journal directory " + dir);
+
+		double memory = load(accounts(), threads, seconds);
+		System.out.printf("%-10s %12.0f ops/s%n", "memory", memory);
+		for (Journal.Durability d : Journal.Durability.values()) {
+			Path sub = dir.resolve(d.name().toLowerCase());
+			run(sub, d, threads, seconds, stripes, memory);
+		}
+	}
+
+	private static void run(Path dir, Journal.Durability durability, int threads, double seconds, int stripes,
+			double memory) throws IOException, InterruptedException {
+		Account[] account = accounts();
+		double rate;
+		try (Journal journal = new Journal(dir, SEGMENT_SIZE, durability, FLUSH_MILLIS, stripes)) {
+			for (Account a : account)
+				a.setJournal(journal);
+			rate = load(account, threads, seconds);
+		}
+
+		Account[] restored = accounts();
+		long records = Journal.restore(dir, restored);
+		boolean same = true;
+		for (int i = 0; i < account.length; i++)
+			same &= account[i].getBalance() == restored[i].getBalance();
+		System.out.printf("%-10s %12.0f ops/s  %7.2fx slower, restored %d records, balances %s%n",
+				durability.name().toLowerCase(), rate, memory / rate, records, same ? "match" : "DO NOT MATCH");
+	}
+
+	private static Account[] accounts() {
+		Account[] account = new Account[10];
+		for (int i = 0; i < account.length; i++)
+			account[i] = new Account(1000 + i, "Customer" + i, 1000 * (i + 1), Strategies.CAS);
+		return account;
+	}
+
+	/**
+	 * Lets the threads deposit into and withdraw from the accounts in turn
+	 * @return operations per second
+	 */
+	private static double load(Account[] account, int threads, double seconds)
+			throws InterruptedException {
+		Loader[] t = new Loader[threads];
+		for (int i = 0; i < threads; i++)
+			t[i] = new Loader(account, i);
+		long start = System.nanoTime();
+		for (Loader l : t)
+			l.start();
+		Thread.sleep((long) (seconds * 1000));
+		for (Loader l : t)
+			l.running = false;
+		long total = 0;
+		for (Loader l : t) {
+			l.join();
+			total += l.ops;
+		}
+		long elapsed = System.nanoTime() - start;
+		return total / (elapsed / 1e9);
+	}
+
+	private static class Loader extends Thread {
+		private final Account[] account;
+		private final int first;
+		volatile boolean running = true;
+		long ops;
+
+		Loader(Account[] account, int first) {
+			this.account = account;
+			this.first = first;
+		}
+
+		public void run() {
+			long n = 0;
+			int a = first;
+			while (running) {
+				Account acc = account[a++ % account.length];
+				if ((n & 1023) == 1023)
+					acc.setBalance(1000);
+				else if ((n & 1) == 0)
+					acc.deposit(10);
+				else
+					acc.withdraw(10);
+				n++;
+			}
+			ops = n;
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package engine;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class LockBalance
+ * A balance whose update is guarded by a fair or unfair ReentrantLock.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class LockBalance implements Balance {
+
+	private final ReentrantLock lock;
+	private final LockStats stats = new LockStats();
+
+	private double balance;
+
+	LockBalance(double balance, boolean fair) {
+		this.balance = balance;
+		this.lock = new ReentrantLock(fair);
+	}
+
+	public double get() {
+		lock.lock();
+		try {
+			return balance;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double set(double balance) {
+		lock.lock();
+		try {
+			double previous = this.balance;
+			this.balance = balance;
+			return previous;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void update(double delta, int work) {
+		Account.waste(work);
+		acquire();
+		try {
+			balance = balance + delta;
+		} finally {
+			release();
+		}
+		Account.waste(work);
+	}
+
+	public boolean tryDebit(double amount) {
+		acquire();
+		try {
+			if (balance < amount)
+				return false;
+			balance = balance - amount;
+			return true;
+		} finally {
+			release();
+		}
+	}
+
+	public LockStats getLockStats() {
+		return stats;
+	}
+
+	/**
+	 * Locks, counting the acquisition if metrics are enabled
+	 */
+	private void acquire() {
+		if (!LockMetrics.enabled) {
+			lock.lock();
+			return;
+		}
+		boolean busy = lock.isLocked();
+		long start = System.nanoTime();
+		lock.lock();
+		stats.acquired(start, busy);
+	}
+
+	private void release() {
+		if (stats.isCounting())
+			stats.released();
+		lock.unlock();
+	}
+
+}
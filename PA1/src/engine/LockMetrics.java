@@ -0,0 +1,133 @@
+package engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Class LockMetrics
+ * Runtime switch and JMX view of the per account lock contention counters.
+ *
+ * The lock based strategies (method, block, reentrant, fair, stamped and
+ * seqlock) count their deposits, withdrawals and tryWithdraws in a
+ * LockStats while metrics are enabled. Disabled, the only cost is the read
+ * of one volatile boolean per mutation, a plain load on x86. none and cas
+ * have no lock and count nothing.
+ *
+ * Metrics start disabled unless -Daccount.lockMetrics=true is given; they
+ * can be switched at any time through the Enabled attribute of the
+ * engine:type=LockMetrics MBean, for example from jconsole.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class LockMetrics implements LockMetricsMXBean {
+
+	/**
+	 * System property turning metrics on at startup
+	 */
+	public static final String PROPERTY = "account.lockMetrics";
+	public static final String OBJECT_NAME = "engine:type=LockMetrics";
+
+	/**
+	 * Read by the strategies on every mutation
+	 */
+	static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+
+	/**
+	 * Every LockStats that has counted something. Weak, so accounts of
+	 * finished runs can still be collected.
+	 */
+	private static final Map<LockStats, Boolean> STATS = Collections
+			.synchronizedMap(new WeakHashMap<LockStats, Boolean>());
+
+	private static final LockMetrics INSTANCE = new LockMetrics();
+
+	private volatile int topCount = 10;
+
+	private LockMetrics() {
+	}
+
+	public static LockMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the MBean with the platform MBean server, once.
+	 * @throws IllegalStateException if the server refuses it
+	 */
+	public static void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		} catch (InstanceAlreadyExistsException e) {
+			// Registered before
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+		}
+	}
+
+	static void register(LockStats stats) {
+		STATS.put(stats, Boolean.TRUE);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	public int getAccountCount() {
+		return STATS.size();
+	}
+
+	public List<AccountLockInfo> getHotAccounts() {
+		return topAccounts(topCount);
+	}
+
+	public int getTopCount() {
+		return topCount;
+	}
+
+	public void setTopCount(int topCount) {
+		if (topCount < 1)
+			throw new IllegalArgumentException("Top count must be positive: " + topCount);
+		this.topCount = topCount;
+	}
+
+	public List<AccountLockInfo> topAccounts(int n) {
+		List<AccountLockInfo> all = new ArrayList<AccountLockInfo>();
+		for (LockStats s : stats())
+			all.add(s.snapshot());
+		Collections.sort(all, Comparator.comparingLong(AccountLockInfo::getWaitNanos)
+				.thenComparingLong(AccountLockInfo::getContendedAcquisitions).reversed());
+		return new ArrayList<AccountLockInfo>(all.subList(0, Math.min(Math.max(n, 0), all.size())));
+	}
+
+	public void reset() {
+		for (LockStats s : stats())
+			s.reset();
+	}
+
+	private static List<LockStats> stats() {
+		synchronized (STATS) {
+			return new ArrayList<LockStats>(STATS.keySet());
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package engine;
+
+import java.util.List;
+
+/**
+ * Interface LockMetricsMXBean
+ * Management interface of LockMetrics, registered as engine:type=LockMetrics.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public interface LockMetricsMXBean {
+
+	boolean isEnabled();
+
+	/**
+	 * Turns counting on or off for all accounts
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return number of accounts whose lock has been counted
+	 */
+	int getAccountCount();
+
+	/**
+	 * @return the hottest accounts, as many as TopCount
+	 */
+	List<AccountLockInfo> getHotAccounts();
+
+	int getTopCount();
+
+	void setTopCount(int topCount);
+
+	/**
+	 * @param n how many accounts to return
+	 * @return the n accounts with the most time spent waiting for their
+	 *         lock, then the most contended acquisitions
+	 */
+	List<AccountLockInfo> topAccounts(int n);
+
+	/**
+	 * Zeroes the counters of all accounts
+	 */
+	void reset();
+
+}
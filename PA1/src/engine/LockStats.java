@@ -0,0 +1,107 @@
+package engine;
+
+/**
+ * Class LockStats
+ * Lock contention counters of one balance: acquisitions, acquisitions that
+ * found the lock taken, time spent waiting for the lock and time it was
+ * held. Only mutations are counted, not reads.
+ *
+ * The counters are plain fields written by the thread holding the lock
+ * they measure, so counting adds no synchronization of its own. They are
+ * read without the lock for reporting and may then be a few updates behind.
+ * Nothing is counted while LockMetrics is disabled.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public final class LockStats {
+
+	private volatile Account account;
+
+	private long acquisitions;
+	private long contended;
+	private long waitNanos;
+	private long holdNanos;
+
+	private long holdStart;
+	/**
+	 * Set while the lock is held with counting on, for locks that cannot
+	 * tell whether they are taken, such as monitors
+	 */
+	private volatile boolean held;
+	/**
+	 * Same as held, but only read by the lock holder, so a plain field
+	 */
+	private boolean counting;
+	private boolean registered;
+
+	void setAccount(Account account) {
+		this.account = account;
+	}
+
+	Account getAccount() {
+		return account;
+	}
+
+	boolean isHeld() {
+		return held;
+	}
+
+	/**
+	 * Called holding the lock
+	 * @return whether this acquisition is being counted
+	 */
+	boolean isCounting() {
+		return counting;
+	}
+
+	/**
+	 * Counts an acquisition. Called right after the lock was acquired.
+	 * @param start System.nanoTime() before trying to acquire
+	 * @param busy whether the lock was seen taken before trying
+	 */
+	void acquired(long start, boolean busy) {
+		long now = System.nanoTime();
+		acquisitions++;
+		if (busy)
+			contended++;
+		waitNanos += now - start;
+		holdStart = now;
+		counting = true;
+		held = true;
+		if (!registered) {
+			registered = true;
+			LockMetrics.register(this);
+		}
+	}
+
+	/**
+	 * Counts the hold time. Called right before the lock is released.
+	 */
+	void released() {
+		holdNanos += System.nanoTime() - holdStart;
+		counting = false;
+		held = false;
+	}
+
+	/**
+	 * Zeroes the counters. Updates racing with this may survive it.
+	 */
+	void reset() {
+		acquisitions = 0;
+		contended = 0;
+		waitNanos = 0;
+		holdNanos = 0;
+	}
+
+	AccountLockInfo snapshot() {
+		Account a = account;
+		return new AccountLockInfo(a == null ? 0 : a.getAcc(), a == null ? null : a.getName(),
+				acquisitions, contended, waitNanos, holdNanos);
+	}
+
+}
@@ -0,0 +1,122 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class Mailbox
+ * A bounded multi-producer, single-consumer ring buffer of balance updates,
+ * after the LMAX Disruptor. A producer claims the next sequence number with
+ * one atomic increment, waits while the ring is full, writes the slot and
+ * publishes it by storing its sequence number in the slot's flag. The single
+ * consumer takes every published slot in order, in batches, and then moves
+ * the head on, which frees the slots for producers. No locks are taken.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Mailbox {
+
+	/**
+	 * Receives the updates drained from a mailbox
+	 */
+	public interface Consumer {
+		void apply(int account, double delta);
+	}
+
+	private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final int mask;
+	private final int[] accounts;
+	private final double[] deltas;
+	/**
+	 * Sequence number last published in each slot
+	 */
+	private final long[] published;
+
+	/**
+	 * Next sequence number to claim
+	 */
+	private final AtomicLong tail = new AtomicLong();
+	/**
+	 * Next sequence number to consume; written only by the consumer
+	 */
+	private volatile long head;
+
+	/**
+	 * @param capacity number of slots, rounded up to a power of two
+	 */
+	public Mailbox(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		mask = size - 1;
+		accounts = new int[size];
+		deltas = new double[size];
+		published = new long[size];
+		for (int i = 0; i < size; i++)
+			published[i] = i - size;
+	}
+
+	/**
+	 * Puts an update in the ring, waiting while it is full.
+	 * @param account index of the account in the consumer's shard
+	 * @param delta amount to add, negative for a withdrawal
+	 */
+	public void offer(int account, double delta) {
+		long seq = tail.getAndIncrement();
+		int spins = 0;
+		while (seq - head > mask)
+			spins = backOff(spins);
+		int i = (int) seq & mask;
+		accounts[i] = account;
+		deltas[i] = delta;
+		PUBLISHED.setRelease(published, i, seq);
+	}
+
+	/**
+	 * Hands every update published so far, up to a batch limit, to the
+	 * consumer. Only the owning thread may call this.
+	 * @return the number of updates drained
+	 */
+	public int drain(Consumer consumer, int limit) {
+		long h = head;
+		int n = 0;
+		while (n < limit) {
+			int i = (int) (h + n) & mask;
+			if ((long) PUBLISHED.getAcquire(published, i) != h + n)
+				break;
+			consumer.apply(accounts[i], deltas[i]);
+			n++;
+		}
+		if (n > 0)
+			head = h + n;
+		return n;
+	}
+
+	/**
+	 * @return true once everything claimed so far has been consumed
+	 */
+	public boolean isEmpty() {
+		return head == tail.get();
+	}
+
+	/**
+	 * Spins for a while, then yields, then parks for a few microseconds
+	 * @return the next spin count
+	 */
+	static int backOff(int spins) {
+		if (spins < 100)
+			Thread.onSpinWait();
+		else if (spins < 200)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(20000);
+		return spins + 1;
+	}
+
+}
@@ -0,0 +1,168 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Class MailboxBench
+ * Compares the locking of task4.Account with the single-writer
+ * MailboxEngine when many depositors and withdrawers hit a few hot
+ * accounts. Each scenario runs once with the fake computations of task4
+ * around every update, done by the client thread in both models, and once
+ * with no fake computation at all, where the cost of the update itself is
+ * all that is left. The lock baseline without fake computation is the
+ * synchronized block strategy of the engine.
+ *
+ * Half the threads deposit 10 and half withdraw 10 the same number of
+ * times, so every balance must end where it started.
+ *
+ * Usage: java engine.MailboxBench [threads [operations [accounts]]]
+ * operations is per thread without fake computation; with it, a hundredth
+ * of that is run.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class MailboxBench {
+
+	private static final double AMOUNT = 10;
+	private static final int CAPACITY = 1024;
+
+	/**
+	 * One deposit or withdrawal on an account, by index
+	 */
+	private interface Operation {
+		void apply(int account, boolean deposit);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads;
+		int operations;
+		int accounts;
+		try {
+			threads = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+			operations = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+			accounts = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+			if (threads < 2 || operations < 100 || accounts < 1)
+				throw new IllegalArgumentException("Need at least 2 threads, 100 operations and 1 account");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		int shards = Math.min(accounts, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		System.out.printf("%d threads on %d accounts, %d mailbox shards%n", threads, accounts, shards);
+
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;
+			if (!print)
+				System.out.println("Warming up");
+			else
+				System.out.printf("%-22s %12s %14s  %s%n", "", "seconds", "ops/s", "balances");
+
+			int n = operations / 100;
+			task4.Account[] locked = new task4.Account[accounts];
+			for (int i = 0; i < accounts; i++)
+				locked[i] = new task4.Account(1000 + i, "Customer" + i, 1000);
+			long t = run(threads, n, accounts, (a, d) -> {
+				if (d)
+					locked[a].deposit(AMOUNT);
+				else
+					locked[a].withdraw(AMOUNT);
+			}, null);
+			boolean same = true;
+			for (task4.Account a : locked)
+				same &= a.getBalance() == 1000;
+			report(print, "task4 lock", t, threads, n, same, "");
+
+			MailboxEngine engine = new MailboxEngine(opening(accounts), shards, CAPACITY);
+			t = run(threads, n, accounts, (a, d) -> {
+				int work = d ? Account.DEPOSIT_WORK : Account.WITHDRAW_WORK;
+				Account.waste(work);
+				if (d)
+					engine.deposit(a, AMOUNT);
+				else
+					engine.withdraw(a, AMOUNT);
+				Account.waste(work);
+			}, engine::close);
+			report(print, "mailbox", t, threads, n, check(engine), batch(engine));
+
+			n = operations;
+			Balance[] balance = new Balance[accounts];
+			for (int i = 0; i < accounts; i++)
+				balance[i] = Strategies.BLOCK.newBalance(1000);
+			t = run(threads, n, accounts, (a, d) -> balance[a].update(d ? AMOUNT : -AMOUNT, 0), null);
+			same = true;
+			for (Balance b : balance)
+				same &= b.get() == 1000;
+			report(print, "lock, no work", t, threads, n, same, "");
+
+			MailboxEngine bare = new MailboxEngine(opening(accounts), shards, CAPACITY);
+			t = run(threads, n, accounts, (a, d) -> {
+				if (d)
+					bare.deposit(a, AMOUNT);
+				else
+					bare.withdraw(a, AMOUNT);
+			}, bare::close);
+			report(print, "mailbox, no work", t, threads, n, check(bare), batch(bare));
+		}
+	}
+
+	private static double[] opening(int accounts) {
+		double[] b = new double[accounts];
+		Arrays.fill(b, 1000);
+		return b;
+	}
+
+	private static boolean check(MailboxEngine engine) {
+		boolean same = true;
+		for (int i = 0; i < engine.getAccounts(); i++)
+			same &= engine.getBalance(i) == 1000;
+		return same;
+	}
+
+	private static String batch(MailboxEngine engine) {
+		return String.format("  mean batch %.1f", engine.getMeanBatch());
+	}
+
+	/**
+	 * Runs threads/2 depositors and threads/2 withdrawers, each doing n
+	 * operations round robin over the accounts
+	 * @param finish run after the threads are joined and before the clock
+	 *        stops, so an engine can apply what is still in its mailboxes
+	 * @return elapsed nanoseconds
+	 */
+	private static long run(int threads, final int n, final int accounts, final Operation op,
+			Runnable finish) throws InterruptedException {
+		Thread[] t = new Thread[threads / 2 * 2];
+		for (int i = 0; i < t.length; i++) {
+			final boolean deposit = i % 2 == 0;
+			final int first = i / 2;
+			t[i] = new Thread(() -> {
+				for (int k = 0; k < n; k++)
+					op.apply((first + k) % accounts, deposit);
+			});
+		}
+		long start = System.nanoTime();
+		for (Thread x : t)
+			x.start();
+		for (Thread x : t)
+			x.join();
+		if (finish != null)
+			finish.run();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(boolean print, String name, long nanos, int threads, int n, boolean same,
+			String extra) {
+		if (!print)
+			return;
+		long ops = (long) (threads / 2 * 2) * n;
+		System.out.printf("%-22s %12.3f %14.0f  %s%s%n", name, nanos / 1e9, ops / (nanos / 1e9),
+				same ? "match" : "DO NOT MATCH", extra);
+	}
+
+}
@@ -0,0 +1,174 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Class MailboxEngine
+ * Single-writer execution of deposits and withdrawals. The accounts are
+ * split into shards and every shard is owned by one thread, the only thread
+ * that ever writes its balances. Depositors and withdrawers do not touch a
+ * balance: they put the update into the owner's Mailbox and go on. The
+ * owner drains its mailbox in batches and adds the deltas to plain doubles,
+ * with no lock and no atomic instruction per update. Account i belongs to
+ * shard i % shards.
+ *
+ * Readers see the balance as of the last update the owner applied, so a
+ * deposit may not be visible yet right after deposit() returns. Once
+ * close() has returned every submitted update has been applied.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class MailboxEngine implements AutoCloseable {
+
+	/**
+	 * Most updates an owner applies before it looks at its run flag again
+	 */
+	static final int BATCH = 256;
+
+	private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(double[].class);
+
+	private final Shard[] shard;
+	private final int accounts;
+
+	/**
+	 * Starts one owner thread per shard.
+	 * @param balances opening balance of each account
+	 * @param shards number of owner threads
+	 * @param capacity slots in each owner's mailbox
+	 */
+	public MailboxEngine(double[] balances, int shards, int capacity) {
+		if (shards < 1 || shards > balances.length)
+			throw new IllegalArgumentException("Shards must be between 1 and " + balances.length + ": " + shards);
+		accounts = balances.length;
+		shard = new Shard[shards];
+		for (int s = 0; s < shards; s++) {
+			double[] own = new double[(accounts - s + shards - 1) / shards];
+			for (int i = 0; i < own.length; i++)
+				own[i] = balances[s + i * shards];
+			shard[s] = new Shard(s, own, capacity);
+			shard[s].start();
+		}
+	}
+
+	public int getAccounts() {
+		return accounts;
+	}
+
+	public int getShards() {
+		return shard.length;
+	}
+
+	/**
+	 * A method that deposits money into an account
+	 * @param account index of the account
+	 * @param amount A double that represents a deposit amount
+	 */
+	public void deposit(int account, double amount) {
+		submit(account, amount);
+	}
+
+	/**
+	 * A method that withdraws money from an account
+	 * @param account index of the account
+	 * @param amount A double that represents a withdrawal amount
+	 */
+	public void withdraw(int account, double amount) {
+		submit(account, -amount);
+	}
+
+	/**
+	 * @return the balance of an account as last applied by its owner
+	 */
+	public double getBalance(int account) {
+		checkAccount(account);
+		return (double) BALANCES.getAcquire(shard[account % shard.length].balances, account / shard.length);
+	}
+
+	/**
+	 * @return the mean number of updates an owner applied per drained batch
+	 */
+	public double getMeanBatch() {
+		long drained = 0, batches = 0;
+		for (Shard s : shard) {
+			drained += s.drained;
+			batches += s.batches;
+		}
+		return batches == 0 ? 0 : (double) drained / batches;
+	}
+
+	/**
+	 * Applies everything submitted so far and stops the owners. Must only be
+	 * called once no thread submits any more.
+	 */
+	public void close() {
+		for (Shard s : shard)
+			s.running = false;
+		for (Shard s : shard) {
+			try {
+				s.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void submit(int account, double delta) {
+		checkAccount(account);
+		shard[account % shard.length].mailbox.offer(account / shard.length, delta);
+	}
+
+	private void checkAccount(int account) {
+		if (account < 0 || account >= accounts)
+			throw new IndexOutOfBoundsException("Account " + account + " of " + accounts);
+	}
+
+	/**
+	 * The owner of one shard: the only thread writing its balances
+	 */
+	private static class Shard extends Thread implements Mailbox.Consumer {
+		private final double[] balances;
+		private final Mailbox mailbox;
+		volatile boolean running = true;
+		/*
+		 * Written by the owner only, read after it has been joined
+		 */
+		long drained;
+		long batches;
+
+		Shard(int index, double[] balances, int capacity) {
+			super("shard-" + index);
+			setDaemon(true);
+			this.balances = balances;
+			this.mailbox = new Mailbox(capacity);
+		}
+
+		public void run() {
+			int idle = 0;
+			while (true) {
+				int n = mailbox.drain(this, BATCH);
+				if (n > 0) {
+					drained += n;
+					batches++;
+					idle = 0;
+				} else if (!running && mailbox.isEmpty()) {
+					return;
+				} else {
+					idle = Mailbox.backOff(idle);
+				}
+			}
+		}
+
+		public void apply(int account, double delta) {
+			// Release only orders the store for readers; no other writer exists
+			BALANCES.setRelease(balances, account, balances[account] + delta);
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package engine;
+
+/**
+ * Class MethodMonitorBalance
+ * A balance whose whole update, fake computations included, runs in a
+ * synchronized method.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class MethodMonitorBalance implements Balance {
+
+	private final LockStats stats = new LockStats();
+
+	private double balance;
+
+	MethodMonitorBalance(double balance) {
+		this.balance = balance;
+	}
+
+	public synchronized double get() {
+		return balance;
+	}
+
+	public synchronized double set(double balance) {
+		double previous = this.balance;
+		this.balance = balance;
+		return previous;
+	}
+
+	public void update(double delta, int work) {
+		if (LockMetrics.enabled)
+			countedUpdate(delta, work, stats.isHeld(), System.nanoTime());
+		else
+			lockedUpdate(delta, work);
+	}
+
+	public boolean tryDebit(double amount) {
+		if (LockMetrics.enabled)
+			return countedDebit(amount, stats.isHeld(), System.nanoTime());
+		return lockedDebit(amount);
+	}
+
+	public LockStats getLockStats() {
+		return stats;
+	}
+
+	private synchronized void lockedUpdate(double delta, int work) {
+		Account.waste(work);
+		balance = balance + delta;
+		Account.waste(work);
+	}
+
+	private synchronized boolean lockedDebit(double amount) {
+		if (balance < amount)
+			return false;
+		balance = balance - amount;
+		return true;
+	}
+
+	private synchronized void countedUpdate(double delta, int work, boolean busy, long start) {
+		stats.acquired(start, busy);
+		lockedUpdate(delta, work);
+		stats.released();
+	}
+
+	private synchronized boolean countedDebit(double amount, boolean busy, long start) {
+		stats.acquired(start, busy);
+		boolean debited = lockedDebit(amount);
+		stats.released();
+		return debited;
+	}
+
+}
@@ -0,0 +1,304 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class OpenLoop
+ * An open-loop load generator. Depositor, Withdrawer and the Driver
+ * clients are closed-loop: a thread only issues its next call once the
+ * last one returned, so when the accounts are saturated the clients slow
+ * down with them and the time a call would have waited to start is never
+ * measured (coordinated omission). Here every thread has a fixed schedule
+ * of intended start times at its share of a target rate, and the latency
+ * of a call is taken from its intended start, not from when the thread got
+ * round to it. A thread that falls behind its schedule issues the calls it
+ * owes back to back, and their latency includes the time they were late.
+ *
+ * For every strategy the closed-loop capacity is measured first with the
+ * Driver, and then the offered load is swept over fractions of it. Below
+ * the knee the achieved rate follows the offered one and the latency is
+ * the service time; past it the achieved rate stays at capacity and the
+ * latency from the intended start grows with the length of the run, while
+ * the service time of each call, all a closed-loop client would report,
+ * hardly moves.
+ *
+ * Calls still owed when the run is over by a whole duration more are not
+ * made; they are counted as unfinished and recorded with the time they
+ * had waited so far, a lower bound of their latency.
+ *
+ * Usage: java engine.OpenLoop [--loads=f,...] [--rates=r,...] [--name=value ...]
+ * --loads are fractions of the closed-loop capacity, default
+ * 0.1,0.3,0.5,0.7,0.8,0.9,1,1.1,1.3; --rates are absolute operations per
+ * second and replace them. The other arguments are those of Driver, see
+ * Workload, with defaults --duration=2 --warmup=1. Without --sync every
+ * strategy is swept.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class OpenLoop {
+
+	private static final String[] DEFAULTS = { "--duration=2", "--warmup=1" };
+	private static final double[] LOADS = { 0.1, 0.3, 0.5, 0.7, 0.8, 0.9, 1, 1.1, 1.3 };
+
+	/**
+	 * The outcome of one run at one offered rate
+	 */
+	public static class Result {
+		public final double offered;
+		public final double achieved;
+		/**
+		 * From the intended start to the end of every call
+		 */
+		public final Histogram latency;
+		/**
+		 * From the actual start to the end of every call
+		 */
+		public final Histogram service;
+		public final long unfinished;
+
+		Result(double offered, double achieved, Histogram latency, Histogram service, long unfinished) {
+			this.offered = offered;
+			this.achieved = achieved;
+			this.latency = latency;
+			this.service = service;
+			this.unfinished = unfinished;
+		}
+	}
+
+	public static void main(String[] args) {
+		double[] loads = LOADS;
+		double[] rates = null;
+		List<Workload> runs = new ArrayList<Workload>();
+		try {
+			List<String> rest = new ArrayList<String>(Arrays.asList(DEFAULTS));
+			boolean sync = false;
+			for (String arg : args) {
+				if (arg.startsWith("--loads="))
+					loads = parseList(arg);
+				else if (arg.startsWith("--rates="))
+					rates = parseList(arg);
+				else
+					rest.add(arg);
+				sync |= arg.startsWith("--sync=");
+			}
+			if (sync) {
+				runs.add(Workload.parse(rest.toArray(new String[0])));
+			} else {
+				for (Strategies s : Strategies.values()) {
+					List<String> a = new ArrayList<String>(rest);
+					a.add("--sync=" + s.getName());
+					runs.add(Workload.parse(a.toArray(new String[0])));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.println(sync(runs.get(0)));
+		System.out.printf("%-10s %12s %12s %10s %10s %10s %10s %10s %10s%n", "strategy", "offered/s",
+				"achieved/s", "p50 us", "p99 us", "p99.9 us", "max us", "svc p99", "unfinished");
+
+		for (Workload w : runs) {
+			Account[] account = w.newAccounts();
+			Driver.Client[] clients = Driver.clients(w, account);
+			double seconds = Driver.run(w, clients) / 1e9;
+			long ops = 0;
+			for (Driver.Client c : clients)
+				for (Histogram h : c.latency)
+					ops += h.getTotalCount();
+			double capacity = ops / seconds;
+			System.out.printf("%-10s closed-loop capacity %.0f ops/s%n", w.getStrategy().getName(), capacity);
+
+			double[] sweep = rates;
+			if (sweep == null) {
+				sweep = new double[loads.length];
+				for (int i = 0; i < loads.length; i++)
+					sweep[i] = loads[i] * capacity;
+			}
+			for (double rate : sweep) {
+				Result r = run(w, rate);
+				System.out.printf("%-10s %12.0f %12.0f %10.1f %10.1f %10.1f %10.1f %10.1f %10d%n",
+						w.getStrategy().getName(), r.offered, r.achieved, r.latency.getValueAtPercentile(50) / 1e3,
+						r.latency.getValueAtPercentile(99) / 1e3, r.latency.getValueAtPercentile(99.9) / 1e3,
+						r.latency.getMax() / 1e3, r.service.getValueAtPercentile(99) / 1e3, r.unfinished);
+			}
+		}
+	}
+
+	/**
+	 * Offers the operations of a workload at a fixed rate on fresh accounts.
+	 * @param rate operations per second over all threads
+	 */
+	public static Result run(Workload w, double rate) {
+		if (!(rate > 0))
+			throw new IllegalArgumentException("Rate must be positive: " + rate);
+		Account[] account = w.newAccounts();
+		Zipf zipf = new Zipf(account.length, w.getSkew());
+		int threads = w.getThreads();
+		long start = System.nanoTime() + 10000000;
+		long measureFrom = start + (long) (w.getWarmupSeconds() * 1e9);
+		long measureTo = measureFrom + (long) (w.getDurationSeconds() * 1e9);
+		long stopAt = measureTo + (long) (w.getDurationSeconds() * 1e9);
+
+		Generator[] g = new Generator[threads];
+		for (int i = 0; i < threads; i++) {
+			g[i] = new Generator(w, account, zipf, i, threads * 1e9 / rate, (double) i / threads, start,
+					measureFrom, measureTo, stopAt);
+			g[i].start();
+		}
+		Histogram latency = new Histogram();
+		Histogram service = new Histogram();
+		long unfinished = 0;
+		long lastEnd = measureTo;
+		for (Generator x : g) {
+			try {
+				x.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			latency.add(x.latency);
+			service.add(x.service);
+			unfinished += x.unfinished;
+			lastEnd = Math.max(lastEnd, x.lastEnd);
+		}
+		double achieved = service.getTotalCount() / ((lastEnd - measureFrom) / 1e9);
+		return new Result(rate, achieved, latency, service, unfinished);
+	}
+
+	private static double[] parseList(String arg) {
+		String[] parts = arg.substring(arg.indexOf('=') + 1).split(",");
+		double[] values = new double[parts.length];
+		try {
+			for (int i = 0; i < parts.length; i++) {
+				values[i] = Double.parseDouble(parts[i]);
+				if (!(values[i] > 0))
+					throw new IllegalArgumentException("Values must be positive: " + arg);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad list: " + arg);
+		}
+		return values;
+	}
+
+	private static String sync(Workload w) {
+		return w.toString().replaceAll(" sync=\\S*", "");
+	}
+
+	/**
+	 * Waits until the given time, parking while it is far off and yielding
+	 * close to it, so that waiting threads leave the cores to working ones
+	 * @return the time now
+	 */
+	static long waitUntil(long time) {
+		long now;
+		while ((now = System.nanoTime()) < time) {
+			long gap = time - now;
+			if (gap > 200000)
+				LockSupport.parkNanos(gap - 100000);
+			else
+				Thread.yield();
+		}
+		return now;
+	}
+
+	/**
+	 * Class Generator
+	 * One thread of the generator: issues operations at intended start
+	 * times start + (k + phase) * period, with its own random source and
+	 * histograms.
+	 */
+	private static final class Generator extends Thread {
+
+		private final Account[] account;
+		private final Zipf zipf;
+		private final SplittableRandom random;
+		private final int depositBelow;
+		private final int withdrawBelow;
+		private final int weights;
+		private final double amount;
+
+		private final double period;
+		private final double phase;
+		private final long start;
+		private final long measureFrom;
+		private final long measureTo;
+		private final long stopAt;
+
+		final Histogram latency = new Histogram();
+		final Histogram service = new Histogram();
+		long unfinished;
+		long lastEnd;
+
+		Generator(Workload w, Account[] account, Zipf zipf, int index, double period, double phase, long start,
+				long measureFrom, long measureTo, long stopAt) {
+			this.account = account;
+			this.zipf = zipf;
+			this.random = new SplittableRandom(0x5DEECE66DL * (index + 1));
+			this.depositBelow = w.getDepositWeight();
+			this.withdrawBelow = depositBelow + w.getWithdrawWeight();
+			this.weights = withdrawBelow + w.getReadWeight();
+			this.amount = w.getAmount();
+			this.period = period;
+			this.phase = phase;
+			this.start = start;
+			this.measureFrom = measureFrom;
+			this.measureTo = measureTo;
+			this.stopAt = stopAt;
+		}
+
+		public void run() {
+			for (long k = 0;; k++) {
+				long intended = start + (long) ((k + phase) * period);
+				if (intended >= measureTo)
+					return;
+				long now = waitUntil(intended);
+				if (now > stopAt) {
+					owe(k, now);
+					return;
+				}
+				Account a = account[zipf.next(random)];
+				int pick = random.nextInt(weights);
+				if (pick < depositBelow)
+					a.deposit(amount);
+				else if (pick < withdrawBelow)
+					a.withdraw(amount);
+				else
+					a.getBalance();
+				long end = System.nanoTime();
+				if (intended >= measureFrom) {
+					latency.record(end - intended);
+					service.record(end - now);
+					lastEnd = end;
+				}
+			}
+		}
+
+		/**
+		 * Records the measured calls from the k-th on as unfinished, with
+		 * the time they have waited until now
+		 */
+		private void owe(long k, long now) {
+			for (;; k++) {
+				long intended = start + (long) ((k + phase) * period);
+				if (intended >= measureTo)
+					return;
+				if (intended >= measureFrom) {
+					latency.record(now - intended);
+					unfinished++;
+				}
+			}
+		}
+	}
+
+}
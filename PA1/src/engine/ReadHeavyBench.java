@@ -0,0 +1,68 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class ReadHeavyBench
+ * The 95% read scenario: runs the Driver with a 3:2:95
+ * deposit:withdraw:read mix once for every synchronization strategy and
+ * prints one line per strategy with the throughput of reads and writes and
+ * the read latency. Strategies whose reads take the lock stall readers
+ * behind writers; stamped (optimistic reads), seqlock and cas do not.
+ *
+ * Usage: java engine.ReadHeavyBench [--name=value ...]
+ * The arguments are those of Driver, see Workload, and override the
+ * defaults of this scenario: --mix=3:2:95 --duration=3 --warmup=1.
+ * --sync is set by the benchmark.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class ReadHeavyBench {
+
+	private static final String[] DEFAULTS = { "--mix=3:2:95", "--duration=3", "--warmup=1" };
+
+	public static void main(String[] args) {
+		List<Workload> runs = new ArrayList<Workload>();
+		try {
+			for (Strategies s : Strategies.values()) {
+				List<String> a = new ArrayList<String>(Arrays.asList(DEFAULTS));
+				a.addAll(Arrays.asList(args));
+				a.add("--sync=" + s.getName());
+				runs.add(Workload.parse(a.toArray(new String[0])));
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.println(runs.get(0).toString().replaceAll(" sync=\\S*", ""));
+		System.out.printf("%-10s %14s %14s %10s %10s %10s %10s%n", "strategy", "read ops/s", "write ops/s",
+				"read p50", "read p99", "read p99.9", "read max");
+
+		for (Workload w : runs) {
+			Account[] account = w.newAccounts();
+			Driver.Client[] clients = Driver.clients(w, account);
+			double seconds = Driver.run(w, clients) / 1e9;
+
+			Histogram reads = new Histogram();
+			long writes = 0;
+			for (Driver.Client c : clients) {
+				reads.add(c.latency[Driver.Client.READ]);
+				writes += c.latency[Driver.Client.DEPOSIT].getTotalCount()
+						+ c.latency[Driver.Client.WITHDRAW].getTotalCount();
+			}
+			System.out.printf("%-10s %14.0f %14.0f %8.2fus %8.2fus %8.2fus %8.2fus%n", w.getStrategy().getName(),
+					reads.getTotalCount() / seconds, writes / seconds, reads.getValueAtPercentile(50) / 1e3,
+					reads.getValueAtPercentile(99) / 1e3, reads.getValueAtPercentile(99.9) / 1e3,
+					reads.getMax() / 1e3);
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Class SeqLockBalance
+ * A balance guarded by a sequence counter. A writer claims the counter by
+ * moving it from even to odd with a compare-and-set, updates the balance
+ * and makes the counter even again. A reader reads the counter, the balance
+ * and the counter once more, and retries if the counter was odd or has
+ * moved. Reads never write shared memory, so any number of readers run at
+ * memory speed and none of them can delay a writer.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class SeqLockBalance implements Balance {
+
+	private static final VarHandle SEQUENCE;
+	private static final VarHandle BALANCE;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			SEQUENCE = lookup.findVarHandle(SeqLockBalance.class, "sequence", long.class);
+			BALANCE = lookup.findVarHandle(SeqLockBalance.class, "balance", double.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Odd while a writer is updating the balance
+	 */
+	private long sequence;
+	private double balance;
+
+	private final LockStats stats = new LockStats();
+
+	SeqLockBalance(double balance) {
+		this.balance = balance;
+	}
+
+	public double get() {
+		for (int spins = 0; ; spins = pause(spins)) {
+			long before = (long) SEQUENCE.getAcquire(this);
+			double value = (double) BALANCE.getOpaque(this);
+			VarHandle.loadLoadFence();
+			if ((before & 1) == 0 && (long) SEQUENCE.getOpaque(this) == before)
+				return value;
+		}
+	}
+
+	public double set(double balance) {
+		long s = beginWrite();
+		double previous = (double) BALANCE.getOpaque(this);
+		BALANCE.setOpaque(this, balance);
+		SEQUENCE.setRelease(this, s + 2);
+		return previous;
+	}
+
+	public void update(double delta, int work) {
+		Account.waste(work);
+		long s = countedBeginWrite();
+		BALANCE.setOpaque(this, (double) BALANCE.getOpaque(this) + delta);
+		endWrite(s);
+		Account.waste(work);
+	}
+
+	public boolean tryDebit(double amount) {
+		if (get() < amount)
+			return false;
+		long s = countedBeginWrite();
+		double value = (double) BALANCE.getOpaque(this);
+		if (value < amount) {
+			// Nothing was written: readers that saw s before can keep it
+			cancelWrite(s);
+			return false;
+		}
+		BALANCE.setOpaque(this, value - amount);
+		endWrite(s);
+		return true;
+	}
+
+	public LockStats getLockStats() {
+		return stats;
+	}
+
+	/**
+	 * beginWrite, counting the acquisition if metrics are enabled
+	 */
+	private long countedBeginWrite() {
+		if (!LockMetrics.enabled)
+			return beginWrite();
+		boolean busy = ((long) SEQUENCE.getOpaque(this) & 1) != 0;
+		long start = System.nanoTime();
+		long s = beginWrite();
+		stats.acquired(start, busy);
+		return s;
+	}
+
+	private void endWrite(long s) {
+		if (stats.isCounting())
+			stats.released();
+		SEQUENCE.setRelease(this, s + 2);
+	}
+
+	/**
+	 * Ends a write section that wrote nothing, putting the counter back
+	 */
+	private void cancelWrite(long s) {
+		if (stats.isCounting())
+			stats.released();
+		SEQUENCE.setRelease(this, s);
+	}
+
+	/**
+	 * Waits for the counter to be even and makes it odd
+	 * @return the even value it had
+	 */
+	private long beginWrite() {
+		for (int spins = 0; ; spins = pause(spins)) {
+			long s = (long) SEQUENCE.getOpaque(this);
+			// The compare-and-set is a full fence, so the balance store stays after it
+			if ((s & 1) == 0 && SEQUENCE.compareAndSet(this, s, s + 1))
+				return s;
+		}
+	}
+
+	/**
+	 * Spins a little, then yields in case the writer was preempted
+	 * @return the next spin count
+	 */
+	private static int pause(int spins) {
+		if (spins < 64)
+			Thread.onSpinWait();
+		else
+			Thread.yield();
+		return spins + 1;
+	}
+
+}
@@ -0,0 +1,109 @@
+package engine;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Class StampedBalance
+ * A balance whose update is guarded by the write lock of a StampedLock.
+ * Reads are optimistic: they take no lock, read the balance and check that
+ * no write lock was held meanwhile. Only a read that overlapped a write
+ * falls back to the read lock, so readers never hold up writers.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class StampedBalance implements Balance {
+
+	private final StampedLock lock = new StampedLock();
+	private final LockStats stats = new LockStats();
+
+	private double balance;
+
+	StampedBalance(double balance) {
+		this.balance = balance;
+	}
+
+	public double get() {
+		long stamp = lock.tryOptimisticRead();
+		// May be torn or stale, but then validate fails
+		double value = balance;
+		if (lock.validate(stamp))
+			return value;
+		stamp = lock.readLock();
+		try {
+			return balance;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public double set(double balance) {
+		long stamp = lock.writeLock();
+		try {
+			double previous = this.balance;
+			this.balance = balance;
+			return previous;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public void update(double delta, int work) {
+		Account.waste(work);
+		long stamp = writeLock();
+		try {
+			balance = balance + delta;
+		} finally {
+			unlockWrite(stamp);
+		}
+		Account.waste(work);
+	}
+
+	/**
+	 * Checks the funds under an optimistic read, so a refusal takes no
+	 * lock, and only takes the write lock to debit.
+	 */
+	public boolean tryDebit(double amount) {
+		long stamp = lock.tryOptimisticRead();
+		double value = balance;
+		if (lock.validate(stamp) && value < amount)
+			return false;
+		stamp = writeLock();
+		try {
+			if (balance < amount)
+				return false;
+			balance = balance - amount;
+			return true;
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+
+	public LockStats getLockStats() {
+		return stats;
+	}
+
+	/**
+	 * Takes the write lock, counting the acquisition if metrics are enabled
+	 */
+	private long writeLock() {
+		if (!LockMetrics.enabled)
+			return lock.writeLock();
+		boolean busy = lock.isWriteLocked() || lock.isReadLocked();
+		long start = System.nanoTime();
+		long stamp = lock.writeLock();
+		stats.acquired(start, busy);
+		return stamp;
+	}
+
+	private void unlockWrite(long stamp) {
+		if (stats.isCounting())
+			stats.released();
+		lock.unlockWrite(stamp);
+	}
+
+}
@@ -0,0 +1,122 @@
+package engine;
+
+/**
+ * Enum Strategies
+ * The built-in synchronization strategies, selected by name on the command
+ * line or through the account.sync system property.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public enum Strategies implements SyncStrategy {
+
+	/** No synchronization at all, as in task2 */
+	NONE("none", false) {
+		public Balance newBalance(double initial) {
+			return new UnsyncedBalance(initial);
+		}
+	},
+	/** Whole operation in a synchronized method, as in task3 */
+	METHOD("method", true) {
+		public Balance newBalance(double initial) {
+			return new MethodMonitorBalance(initial);
+		}
+	},
+	/** Only the update in a synchronized block, as in task4 */
+	BLOCK("block", true) {
+		public Balance newBalance(double initial) {
+			return new BlockMonitorBalance(initial);
+		}
+	},
+	/** Update under an unfair ReentrantLock */
+	REENTRANT("reentrant", false) {
+		public Balance newBalance(double initial) {
+			return new LockBalance(initial, false);
+		}
+	},
+	/** Update under a fair ReentrantLock */
+	FAIR("fair", false) {
+		public Balance newBalance(double initial) {
+			return new LockBalance(initial, true);
+		}
+	},
+	/** Update under the write lock of a StampedLock, optimistic reads */
+	STAMPED("stamped", false) {
+		public Balance newBalance(double initial) {
+			return new StampedBalance(initial);
+		}
+	},
+	/** Update under a sequence counter, reads retry instead of locking */
+	SEQLOCK("seqlock", false) {
+		public Balance newBalance(double initial) {
+			return new SeqLockBalance(initial);
+		}
+	},
+	/** Lock-free compare-and-set update */
+	CAS("cas", false) {
+		public Balance newBalance(double initial) {
+			return new CasBalance(initial);
+		}
+	};
+
+	/**
+	 * Strategy used when neither a name nor the property is given
+	 */
+	public static final Strategies DEFAULT = BLOCK;
+
+	private final String name;
+	private final boolean monitor;
+
+	Strategies(String name, boolean monitor) {
+		this.name = name;
+		this.monitor = monitor;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean usesMonitor() {
+		return monitor;
+	}
+
+	/**
+	 * Looks a strategy up by name.
+	 * @param name one of the names of the constants
+	 * @return the strategy
+	 * @throws IllegalArgumentException if there is no such strategy
+	 */
+	public static Strategies forName(String name) {
+		for (Strategies s : values())
+			if (s.name.equalsIgnoreCase(name))
+				return s;
+		throw new IllegalArgumentException("Unknown synchronization strategy: " + name
+				+ ", expected one of " + names());
+	}
+
+	/**
+	 * @return the strategy named by the account.sync property, or DEFAULT
+	 */
+	public static Strategies fromProperty() {
+		String name = System.getProperty(PROPERTY);
+		return name == null ? DEFAULT : forName(name);
+	}
+
+	/**
+	 * @return all strategy names, separated by commas
+	 */
+	public static String names() {
+		StringBuilder sb = new StringBuilder();
+		for (Strategies s : values()) {
+			if (sb.length() > 0)
+				sb.append(", ");
+			sb.append(s.name);
+		}
+		return sb.toString();
+	}
+
+}
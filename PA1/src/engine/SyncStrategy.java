@@ -0,0 +1,41 @@
+package engine;
+
+/**
+ * Interface SyncStrategy
+ * Decides how the balance of an Account is guarded against concurrent
+ * depositors and withdrawers. The built-in strategies are in Strategies.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public interface SyncStrategy {
+
+	/**
+	 * System property naming the strategy used when none is given
+	 */
+	String PROPERTY = "account.sync";
+
+	/**
+	 * @return the name the strategy is selected by
+	 */
+	String getName();
+
+	/**
+	 * Tells whether updates block inside a synchronized monitor. A virtual
+	 * thread blocked that way pins its carrier thread.
+	 * @return true for the monitor based strategies
+	 */
+	boolean usesMonitor();
+
+	/**
+	 * Creates the guarded balance of one account
+	 * @param initial the opening balance
+	 * @return a new balance
+	 */
+	Balance newBalance(double initial);
+
+}
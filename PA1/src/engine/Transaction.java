@@ -0,0 +1,49 @@
+package engine;
+
+/**
+ * Class Transaction
+ * One deposit or withdrawal on an account, by account number, as it comes
+ * into the engine from outside.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public final class Transaction {
+
+	private final int acc;
+	private final double amount;
+
+	/**
+	 * @param acc the account number
+	 * @param amount added to the balance, negative for a withdrawal
+	 */
+	public Transaction(int acc, double amount) {
+		this.acc = acc;
+		this.amount = amount;
+	}
+
+	public static Transaction deposit(int acc, double amount) {
+		return new Transaction(acc, amount);
+	}
+
+	public static Transaction withdrawal(int acc, double amount) {
+		return new Transaction(acc, -amount);
+	}
+
+	public int getAcc() {
+		return acc;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+
+	public String toString() {
+		return (amount < 0 ? "Withdrawal " + -amount : "Deposit " + amount) + " on account " + acc;
+	}
+
+}
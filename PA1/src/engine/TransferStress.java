@@ -0,0 +1,130 @@
+package engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class TransferStress
+ * Stress test and benchmark of Account.transferTo. Client threads keep
+ * moving random whole amounts between random pairs of accounts, picked
+ * with the Zipfian skew of the workload, until the run is over. The driver
+ * then checks that every thread finished, which would not happen after a
+ * deadlock, and that the total of all balances did not change.
+ *
+ * Usage: java engine.TransferStress [--name=value ...], see Workload;
+ * the --mix and --amount parameters do not apply.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class TransferStress {
+
+	/**
+	 * How long finished threads are waited for before declaring a deadlock
+	 */
+	private static final long JOIN_MILLIS = 10000;
+
+	public static void main(String[] args) throws InterruptedException {
+		Workload workload;
+		try {
+			workload = Workload.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (workload.getAccounts() < 2) {
+			System.err.println("Transfers need at least 2 accounts");
+			System.exit(1);
+		}
+		System.out.println(workload);
+
+		Account[] account = workload.newAccounts();
+		double before = total(account);
+
+		Zipf zipf = new Zipf(account.length, workload.getSkew());
+		Transferer[] threads = new Transferer[workload.getThreads()];
+		for (int i = 0; i < threads.length; i++)
+			threads[i] = new Transferer(account, zipf, i);
+		for (Transferer t : threads)
+			t.start();
+
+		Thread.sleep((long) (workload.getWarmupSeconds() * 1000));
+		long start = System.nanoTime();
+		long startCount = count(threads);
+		Thread.sleep((long) (workload.getDurationSeconds() * 1000));
+		long transfers = count(threads) - startCount;
+		long elapsed = System.nanoTime() - start;
+
+		for (Transferer t : threads)
+			t.running = false;
+		boolean finished = true;
+		for (Transferer t : threads) {
+			t.join(JOIN_MILLIS);
+			finished &= !t.isAlive();
+		}
+
+		double after = total(account);
+		System.out.printf("Throughput: %.0f transfers/s over %.1f s%n", transfers / (elapsed / 1e9), elapsed / 1e9);
+		System.out.printf("Total before %.2f, after %.2f%n", before, after);
+		if (!finished) {
+			System.out.println("FAILED: transfer threads did not finish, deadlock?");
+			System.exit(2);
+		}
+		if (before != after) {
+			System.out.println("FAILED: money was not conserved");
+			System.exit(2);
+		}
+		System.out.println("OK: money conserved, no deadlock");
+	}
+
+	private static double total(Account[] account) {
+		double sum = 0;
+		for (Account a : account)
+			sum += a.getBalance();
+		return sum;
+	}
+
+	private static long count(Transferer[] threads) {
+		long sum = 0;
+		for (Transferer t : threads)
+			sum += t.transfers;
+		return sum;
+	}
+
+	/**
+	 * Moves money between random pairs of accounts until stopped.
+	 */
+	private static class Transferer extends Thread {
+		private final Account[] account;
+		private final Zipf zipf;
+		private final SplittableRandom random;
+		volatile boolean running = true;
+		/**
+		 * Transfers done so far, read by the driver while running
+		 */
+		volatile long transfers;
+
+		Transferer(Account[] account, Zipf zipf, int index) {
+			this.account = account;
+			this.zipf = zipf;
+			this.random = new SplittableRandom(0x9E3779B9L * (index + 1));
+		}
+
+		public void run() {
+			long n = 0;
+			while (running) {
+				int from = zipf.next(random);
+				int to = zipf.next(random);
+				if (from == to)
+					to = (to + 1) % account.length;
+				account[from].transferTo(account[to], 1 + random.nextInt(100));
+				transfers = ++n;
+			}
+		}
+	}
+
+}
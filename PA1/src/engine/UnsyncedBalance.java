@@ -0,0 +1,49 @@
+package engine;
+
+/**
+ * Class UnsyncedBalance
+ * A balance without any synchronization. Concurrent updates get lost.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class UnsyncedBalance implements Balance {
+
+	private double balance;
+
+	UnsyncedBalance(double balance) {
+		this.balance = balance;
+	}
+
+	public double get() {
+		return balance;
+	}
+
+	public double set(double balance) {
+		double previous = this.balance;
+		this.balance = balance;
+		return previous;
+	}
+
+	public void update(double delta, int work) {
+		Account.waste(work);
+		balance = balance + delta;
+		Account.waste(work);
+	}
+
+	public boolean tryDebit(double amount) {
+		if (balance < amount)
+			return false;
+		balance = balance - amount;
+		return true;
+	}
+
+	public LockStats getLockStats() {
+		return null;
+	}
+
+}
@@ -0,0 +1,48 @@
+package engine;
+/**
+ * Class Withdrawer
+ * Implements Withdrawer task class.
+ *
+ * Unlike the task packages this is a plain Runnable, so that it can run on
+ * its own thread, on virtual threads or on a pool, see Execution.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ * 
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Withdrawer implements Runnable {
+	private Account account ;
+	/**
+	 * Number of operations to do
+	 */
+	private int operations;
+
+	public Withdrawer(Account account){
+		this(account, 10000000);
+	}
+
+	public Withdrawer(Account account, int operations){
+		this.account = account;
+		this.operations = operations;
+	}
+	
+	public void run(){
+		// Withdraw 10 CAD into instance variable account
+		for (int i=0;i<operations;i++)
+		{
+			account.withdraw(10);
+			/*
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}*/
+		}
+		
+	}
+
+}
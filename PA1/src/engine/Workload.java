@@ -0,0 +1,160 @@
+package engine;
+
+/**
+ * Class Workload
+ * The parameters of one Driver run, parsed from --name=value arguments:
+ *
+ *   --accounts=10        number of accounts
+ *   --threads=20         number of client threads
+ *   --mix=45:45:10       deposit:withdraw:read weights
+ *   --skew=0             Zipfian theta over the accounts, 0 is uniform
+ *   --duration=10        measured seconds
+ *   --warmup=2           unmeasured seconds before that
+ *   --amount=10          amount of every deposit and withdrawal
+ *   --sync=block         synchronization strategy, see Strategies
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Workload {
+
+	private int accounts = 10;
+	private int threads = 20;
+	private int depositWeight = 45;
+	private int withdrawWeight = 45;
+	private int readWeight = 10;
+	private double skew = 0;
+	private double durationSeconds = 10;
+	private double warmupSeconds = 2;
+	private double amount = 10;
+	private SyncStrategy strategy = Strategies.fromProperty();
+
+	/**
+	 * Parses the arguments, starting from the defaults.
+	 * @param args arguments of the form --name=value
+	 * @return the workload
+	 * @throws IllegalArgumentException on an unknown or malformed argument
+	 */
+	public static Workload parse(String[] args) {
+		Workload w = new Workload();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (!arg.startsWith("--") || eq < 0)
+				throw new IllegalArgumentException("Expected --name=value but got " + arg);
+			w.set(arg.substring(2, eq), arg.substring(eq + 1));
+		}
+		w.check();
+		return w;
+	}
+
+	/**
+	 * Sets one parameter by name
+	 */
+	private void set(String name, String value) {
+		try {
+			if (name.equals("accounts"))
+				accounts = Integer.parseInt(value);
+			else if (name.equals("threads"))
+				threads = Integer.parseInt(value);
+			else if (name.equals("mix"))
+				setMix(value);
+			else if (name.equals("skew"))
+				skew = Double.parseDouble(value);
+			else if (name.equals("duration"))
+				durationSeconds = Double.parseDouble(value);
+			else if (name.equals("warmup"))
+				warmupSeconds = Double.parseDouble(value);
+			else if (name.equals("amount"))
+				amount = Double.parseDouble(value);
+			else if (name.equals("sync"))
+				strategy = Strategies.forName(value);
+			else
+				throw new IllegalArgumentException("Unknown parameter --" + name);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad value for --" + name + ": " + value);
+		}
+	}
+
+	private void setMix(String value) {
+		String[] parts = value.split(":");
+		if (parts.length != 3)
+			throw new IllegalArgumentException("--mix needs deposit:withdraw:read, got " + value);
+		depositWeight = Integer.parseInt(parts[0]);
+		withdrawWeight = Integer.parseInt(parts[1]);
+		readWeight = Integer.parseInt(parts[2]);
+	}
+
+	private void check() {
+		if (accounts < 1 || threads < 1)
+			throw new IllegalArgumentException("--accounts and --threads must be positive");
+		if (depositWeight < 0 || withdrawWeight < 0 || readWeight < 0
+				|| depositWeight + withdrawWeight + readWeight == 0)
+			throw new IllegalArgumentException("--mix weights must be non-negative and not all 0");
+		if (skew < 0 || skew >= 1)
+			throw new IllegalArgumentException("--skew must be in [0, 1)");
+		if (durationSeconds <= 0 || warmupSeconds < 0)
+			throw new IllegalArgumentException("--duration must be positive, --warmup not negative");
+	}
+
+	/**
+	 * Creates the accounts of this workload, numbered from 1000, all opened
+	 * with the same balance.
+	 */
+	public Account[] newAccounts() {
+		Account[] account = new Account[accounts];
+		for (int i = 0; i < accounts; i++)
+			account[i] = new Account(1000 + i, "Customer" + i, 1000, strategy);
+		return account;
+	}
+
+	public int getAccounts() {
+		return accounts;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getDepositWeight() {
+		return depositWeight;
+	}
+
+	public int getWithdrawWeight() {
+		return withdrawWeight;
+	}
+
+	public int getReadWeight() {
+		return readWeight;
+	}
+
+	public double getSkew() {
+		return skew;
+	}
+
+	public double getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	public double getWarmupSeconds() {
+		return warmupSeconds;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+
+	public SyncStrategy getStrategy() {
+		return strategy;
+	}
+
+	public String toString() {
+		return "accounts=" + accounts + " threads=" + threads + " mix=" + depositWeight + ":"
+				+ withdrawWeight + ":" + readWeight + " skew=" + skew + " duration=" + durationSeconds
+				+ "s warmup=" + warmupSeconds + "s sync=" + strategy.getName();
+	}
+
+}
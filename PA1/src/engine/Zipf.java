@@ -0,0 +1,70 @@
+package engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class Zipf
+ * Draws account indexes 0..n-1 with a Zipfian skew: index 0 is the most
+ * popular, index i is picked with a probability proportional to 1/(i+1)^theta.
+ * A theta of 0 is uniform. Uses the constant time method of Gray et al.,
+ * "Quickly Generating Billion-Record Synthetic Databases", which needs
+ * 0 &lt;= theta &lt; 1 and one O(n) pass to set up. The generator is
+ * immutable; the caller passes its own random source.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Zipf {
+
+	private final int n;
+	private final double theta;
+	private final double alpha;
+	private final double zetan;
+	private final double eta;
+
+	/**
+	 * @param n number of items
+	 * @param theta skew, from 0 (uniform) up to but excluding 1
+	 */
+	public Zipf(int n, double theta) {
+		if (n < 1)
+			throw new IllegalArgumentException("n must be positive: " + n);
+		if (theta < 0 || theta >= 1)
+			throw new IllegalArgumentException("theta must be in [0, 1): " + theta);
+		this.n = n;
+		this.theta = theta;
+		this.alpha = 1.0 / (1.0 - theta);
+		this.zetan = zeta(n, theta);
+		double zeta2 = zeta(Math.min(n, 2), theta);
+		this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+	}
+
+	/**
+	 * @param random the random source of the calling thread
+	 * @return an index between 0 and n-1
+	 */
+	public int next(SplittableRandom random) {
+		if (theta == 0 || n == 1)
+			return random.nextInt(n);
+		double u = random.nextDouble();
+		double uz = u * zetan;
+		if (uz < 1)
+			return 0;
+		if (uz < 1 + Math.pow(0.5, theta))
+			return 1;
+		int i = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+		return Math.min(i, n - 1);
+	}
+
+	private static double zeta(int n, double theta) {
+		double sum = 0;
+		for (int i = 1; i <= n; i++)
+			sum += 1 / Math.pow(i, theta);
+		return sum;
+	}
+
+}
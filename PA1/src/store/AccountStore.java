@@ -0,0 +1,472 @@
+package store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class AccountStore
+ * Keeps many accounts as columns of primitive arrays instead of one object
+ * per account: balances in cents in a long[], account numbers in an int[],
+ * names dictionary encoded into an int[]. An IntIntMap maps account numbers
+ * to slots. For tens of millions of accounts this is around 32 bytes per
+ * account and a handful of objects for the garbage collector to mark,
+ * against well over 100 bytes and several objects per engine.Account.
+ *
+ * Balances are updated lock-free with atomic adds on the array elements.
+ * Accounts are added up front by one thread; the store must then be handed
+ * to the other threads in a way that publishes it, such as Thread.start().
+ *
+ * Every write to a balance, by deposit and withdraw, the per slot methods
+ * or an AccountView, also counts the net amount deposited, and passes a
+ * WriteGate so that cut() can hold it back for the moment it takes to copy
+ * the balances. That cut is consistent: its balances add up to the opening
+ * balances plus the net deposits, unless updates were lost.
+ *
+ * pointInTime() gives a consistent view without copying anything up front.
+ * The balance column is split into pages of 1024 slots and every opened
+ * view has an epoch. While a view is open, the first write to touch a
+ * page in that epoch, whichever method makes it, copies the page for the
+ * view before writing to it (copy on write); the view reads copied pages
+ * from the copy and the others from the live column. Writers are held
+ * back only while the epoch changes, and then pay for one page copy per
+ * page they touch while the view is open. One view can be open at a time.
+ * Such views exist for the accounts of a store only: engine.Account keeps
+ * each balance in its own object behind its own strategy, with nothing
+ * shared to copy pages of, so a report over engine accounts still reads
+ * them one by one, or takes only their total from Aggregates.
+ *
+ * With the PADDED layout every balance gets a 128 byte stride of its own
+ * in the balance column, two cache lines so that the adjacent line
+ * prefetcher does not pair neighbours either. Threads updating neighbouring
+ * accounts then no longer invalidate each other's cache lines (false
+ * sharing), at 128 instead of 8 bytes per balance. It pays for small sets
+ * of hot accounts, not for millions of mostly idle ones.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AccountStore implements Snapshot.Source {
+
+	/**
+	 * How balances are laid out in the balance column
+	 */
+	public enum Layout {
+		/** One long after the other, 8 per cache line */
+		PACKED(0),
+		/** One long every 128 bytes */
+		PADDED(4);
+
+		/**
+		 * log2 of the longs between two balances
+		 */
+		final int shift;
+
+		Layout(int shift) {
+			this.shift = shift;
+		}
+	}
+
+	/**
+	 * Atomic access to the elements of the balance column
+	 */
+	static final VarHandle CENTS = MethodHandles.arrayElementVarHandle(long[].class);
+	static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * log2 of the slots per copy on write page
+	 */
+	static final int PAGE_SHIFT = 10;
+	static final int PAGE = 1 << PAGE_SHIFT;
+
+	private final long[] cents;
+	private final Layout layout;
+	private final int shift;
+	private final int[] accs;
+	private final int[] nameCodes;
+	private final IntIntMap index;
+	private final NameDictionary names = new NameDictionary();
+	private int size;
+
+	private final WriteGate gate = new WriteGate();
+	/**
+	 * Sum of the balances accounts were added with
+	 */
+	private long openingCents;
+	/**
+	 * Deposits minus withdrawals made through deposit and withdraw, and
+	 * what batch updates added
+	 */
+	private final LongAdder netCents = new LongAdder();
+
+	/**
+	 * Per page, the epoch of the last view the page was copied for, or
+	 * minus that epoch while the copy is being made
+	 */
+	private final int[] pageEpochs;
+	private int epoch;
+	/**
+	 * The open point in time view, or null
+	 */
+	private volatile PointInTime current;
+
+	/**
+	 * @param capacity the largest number of accounts the store will hold
+	 */
+	public AccountStore(int capacity) {
+		this(capacity, Layout.PACKED);
+	}
+
+	/**
+	 * @param capacity the largest number of accounts the store will hold
+	 * @param layout how balances are laid out
+	 */
+	public AccountStore(int capacity, Layout layout) {
+		this.layout = layout;
+		this.shift = layout.shift;
+		cents = new long[Math.multiplyExact(capacity, 1 << shift)];
+		accs = new int[capacity];
+		nameCodes = new int[capacity];
+		index = new IntIntMap(capacity);
+		pageEpochs = new int[(capacity + PAGE - 1) >>> PAGE_SHIFT];
+	}
+
+	/**
+	 * Adds an account.
+	 * @param acc A unique integer that represents account number
+	 * @param name A string indicating human-readable customer's name
+	 * @param balance A double indicating account balance
+	 * @return the slot of the new account
+	 * @throws IllegalArgumentException if the account number is taken
+	 * @throws IllegalStateException if the store is full
+	 */
+	public int add(int acc, String name, double balance) {
+		if (size == accs.length)
+			throw new IllegalStateException("Store is full at " + size + " accounts");
+		int slot = size;
+		index.putNew(acc, slot);
+		accs[slot] = acc;
+		nameCodes[slot] = names.encode(name);
+		long c = toCents(balance);
+		cents[slot << shift] = c;
+		openingCents += c;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * @return the slot of an account number, or -1 if there is no such account
+	 */
+	public int slotOf(int acc) {
+		return index.get(acc);
+	}
+
+	/**
+	 * @return a view on the account with the given number, or null
+	 */
+	public AccountView get(int acc) {
+		int slot = index.get(acc);
+		return slot < 0 ? null : new AccountView(this, slot);
+	}
+
+	/**
+	 * @return a view on the account in the given slot
+	 */
+	public AccountView view(int slot) {
+		checkSlot(slot);
+		return new AccountView(this, slot);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return accs.length;
+	}
+
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/*
+	 * ---------------------
+	 * Per slot column access
+	 * ---------------------
+	 */
+
+	public int getAcc(int slot) {
+		checkSlot(slot);
+		return accs[slot];
+	}
+
+	public String getName(int slot) {
+		checkSlot(slot);
+		return names.decode(nameCodes[slot]);
+	}
+
+	public long getCents(int slot) {
+		checkSlot(slot);
+		return (long) CENTS.getVolatile(cents, slot << shift);
+	}
+
+	/**
+	 * Sets the balance of a slot, counting the change as a net deposit
+	 */
+	public void setCents(int slot, long value) {
+		checkSlot(slot);
+		set(slot, value);
+	}
+
+	/**
+	 * Atomically adds to the balance of a slot
+	 * @param delta cents to add, negative for a withdrawal
+	 * @return the new balance in cents
+	 */
+	public long addCents(int slot, long delta) {
+		checkSlot(slot);
+		return move(slot, delta);
+	}
+
+	/**
+	 * A method that deposits money into an account by number
+	 * @throws IllegalArgumentException if there is no such account
+	 */
+	public void deposit(int acc, double amount) {
+		move(slotFor(acc), toCents(amount));
+	}
+
+	/**
+	 * A method that withdraws money from an account by number
+	 * @throws IllegalArgumentException if there is no such account
+	 */
+	public void withdraw(int acc, double amount) {
+		move(slotFor(acc), -toCents(amount));
+	}
+
+	/**
+	 * Adds to a balance through the gate, counting the net deposit
+	 * @return the new balance in cents
+	 */
+	long move(int slot, long delta) {
+		int stripe = gate.enter();
+		try {
+			PointInTime view = current;
+			if (view != null && slot < view.size())
+				preserve(view, slot >>> PAGE_SHIFT);
+			long old = (long) CENTS.getAndAdd(cents, slot << shift, delta);
+			netCents.add(delta);
+			return old + delta;
+		} finally {
+			gate.exit(stripe);
+		}
+	}
+
+	/**
+	 * Sets a balance through the gate, counting the change as a net deposit
+	 */
+	void set(int slot, long value) {
+		int stripe = gate.enter();
+		try {
+			PointInTime view = current;
+			if (view != null && slot < view.size())
+				preserve(view, slot >>> PAGE_SHIFT);
+			long old = (long) CENTS.getAndSet(cents, slot << shift, value);
+			netCents.add(value - old);
+		} finally {
+			gate.exit(stripe);
+		}
+	}
+
+	/**
+	 * A change to the whole balance column at once
+	 */
+	interface ColumnUpdate {
+		/**
+		 * @param cents the balance column
+		 * @param size the slots in use
+		 * @param shift log2 of the longs between two balances
+		 * @return the cents added to all balances together
+		 */
+		long apply(long[] cents, int size, int shift);
+	}
+
+	/**
+	 * Runs a batch update over all balances, with every other write held
+	 * back until it is done, and counts what it added. The update writes
+	 * the column with plain stores, so nothing may write a balance without
+	 * passing the gate: addOwned only while a BulkLoader owns the store.
+	 * @throws IllegalStateException if a point in time view is open, which
+	 *         the update would not copy pages for
+	 */
+	synchronized long update(ColumnUpdate update) {
+		if (current != null)
+			throw new IllegalStateException("A point in time view is open");
+		gate.close();
+		try {
+			long delta = update.apply(cents, size, shift);
+			netCents.add(delta);
+			return delta;
+		} finally {
+			gate.open();
+		}
+	}
+
+	/**
+	 * Adds to a balance with a plain add, for a loader whose threads each
+	 * own a fixed set of slots and are joined before anyone reads them.
+	 */
+	void addOwned(int slot, long delta) {
+		cents[slot << shift] += delta;
+	}
+
+	/**
+	 * Counts deposits that were applied by addOwned
+	 */
+	void addNet(long delta) {
+		netCents.add(delta);
+	}
+
+	/**
+	 * @return the opening balances plus the net deposits so far, which the
+	 *         balances should add up to when no deposit is in progress
+	 */
+	public long expectedTotalCents() {
+		return openingCents + netCents.sum();
+	}
+
+	/**
+	 * Takes a consistent cut of all balances. Deposits and withdrawals are
+	 * held back only while the balances are copied, at memory speed; the
+	 * cut can then be audited while they go on.
+	 */
+	public synchronized Cut cut() {
+		long[] copy = new long[size];
+		long expected;
+		gate.close();
+		try {
+			// The writers' atomic adds and the gate make their updates visible
+			if (shift == 0) {
+				System.arraycopy(cents, 0, copy, 0, size);
+			} else {
+				for (int i = 0; i < size; i++)
+					copy[i] = cents[i << shift];
+			}
+			expected = expectedTotalCents();
+		} finally {
+			gate.open();
+		}
+		return new Cut(this, copy, expected);
+	}
+
+	/**
+	 * Opens a consistent view of all balances at this instant, without
+	 * copying them. Deposits and withdrawals are held back only while the
+	 * view is registered; from then on they copy each page they touch for
+	 * the view first. Close the view as soon as it has been read, as it
+	 * keeps writers copying and no other view can be opened until then.
+	 * @throws IllegalStateException if a view is already open
+	 */
+	public synchronized PointInTime pointInTime() {
+		if (current != null)
+			throw new IllegalStateException("A point in time view is already open");
+		PointInTime view;
+		gate.close();
+		try {
+			view = new PointInTime(this, ++epoch, size, expectedTotalCents());
+			current = view;
+		} finally {
+			gate.open();
+		}
+		return view;
+	}
+
+	/**
+	 * Stops copying pages for a view
+	 */
+	synchronized void release(PointInTime view) {
+		if (current == view)
+			current = null;
+	}
+
+	/**
+	 * Copies a page for a view before its first write in the view's epoch.
+	 * Other writers to the page wait until the copy is made; the balances
+	 * are then still those of the moment the view was opened.
+	 */
+	private void preserve(PointInTime view, int page) {
+		int e = view.epoch;
+		int state;
+		for (int spins = 0; (state = (int) PAGES.getAcquire(pageEpochs, page)) != e; spins++) {
+			if (state != -e && PAGES.compareAndSet(pageEpochs, page, state, -e)) {
+				view.save(page, copyPage(page, view.size()));
+				PAGES.setRelease(pageEpochs, page, e);
+				return;
+			}
+			// The copying writer may have been preempted, so do not spin for long
+			if (spins < 100)
+				Thread.onSpinWait();
+			else
+				Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the balances of a page. No one writes to the page meanwhile:
+	 *         the writers before the view were waited for by the gate, and
+	 *         the later ones wait for the copy.
+	 */
+	private long[] copyPage(int page, int size) {
+		int from = page << PAGE_SHIFT;
+		long[] copy = new long[Math.min(PAGE, size - from)];
+		if (shift == 0) {
+			System.arraycopy(cents, from, copy, 0, copy.length);
+		} else {
+			for (int i = 0; i < copy.length; i++)
+				copy[i] = cents[(from + i) << shift];
+		}
+		return copy;
+	}
+
+	/**
+	 * @return the epoch state of a page, see pageEpochs
+	 */
+	int pageEpoch(int page) {
+		return (int) PAGES.getVolatile(pageEpochs, page);
+	}
+
+	/**
+	 * @return the sum of all balances in cents, not a consistent snapshot
+	 *         while writers are running
+	 */
+	public long totalCents() {
+		long sum = 0;
+		for (int i = 0; i < size; i++)
+			sum += (long) CENTS.getVolatile(cents, i << shift);
+		return sum;
+	}
+
+	/**
+	 * Converts a dollar amount into whole cents, rounding to the nearest cent.
+	 */
+	public static long toCents(double amount) {
+		return Math.round(amount * 100);
+	}
+
+	private int slotFor(int acc) {
+		int slot = index.get(acc);
+		if (slot < 0)
+			throw new IllegalArgumentException("No account " + acc);
+		return slot;
+	}
+
+	private void checkSlot(int slot) {
+		if (slot < 0 || slot >= size)
+			throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+	}
+
+}
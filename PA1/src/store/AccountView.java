@@ -0,0 +1,110 @@
+package store;
+
+/**
+ * Class AccountView
+ * A flyweight with the interface of an Account, reading and writing one
+ * slot of an AccountStore. Views hold no state of their own, so they can be
+ * created on demand and thrown away. Account number and name are read only,
+ * since changing them would need the store's index rebuilt. Balance changes
+ * go through the store's gate like its deposits and withdrawals, so they
+ * are held back by cuts and counted in the expected total.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AccountView {
+
+	private final AccountStore store;
+	private final int slot;
+
+	AccountView(AccountStore store, int slot) {
+		this.store = store;
+		this.slot = slot;
+	}
+
+	@Override
+	/**
+	 * Two views are equal when they show the same slot of the same store
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		AccountView other = (AccountView) obj;
+		return store == other.store && slot == other.slot;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(store) * 31 + slot;
+	}
+
+	/**
+	 * Accessor for the slot this view shows
+	 * @return the slot in the store
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Accessor for account no
+	 * @return account no
+	 */
+	public int getAcc() {
+		return store.getAcc(slot);
+	}
+
+	/**
+	 * Accessor for a customer's name
+	 * @return a customer's name
+	 */
+	public String getName() {
+		return store.getName(slot);
+	}
+
+	/**
+	 * Accessor for account balance
+	 * @return an account balance
+	 */
+	public double getBalance() {
+		return store.getCents(slot) / 100.0;
+	}
+
+	/**
+	 * Mutator for account balance
+	 * @param balance A double that represents an account balance
+	 */
+	public void setBalance(double balance) {
+		store.set(slot, AccountStore.toCents(balance));
+	}
+
+	/**
+	 * A method to print this account
+	 */
+	public String toString(){
+		return "Account: "+getAcc()+" \tName: "+getName()+" \tBalance:\t"+getBalance();
+	}
+
+	/**
+	 * A method that allows a customer to deposit money into this account
+	 * @param amount A double that represents a deposit amount
+	 */
+	public void deposit(double amount){
+		store.move(slot, AccountStore.toCents(amount));
+	}
+
+	/**
+	 * A method that allows a customer to withdraw money from this account
+	 * @param amount A double that represents a withdrawal amount
+	 */
+	public void withdraw(double amount){
+		store.move(slot, -AccountStore.toCents(amount));
+	}
+
+}
@@ -0,0 +1,191 @@
+package store;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class BatchPosting
+ * The nightly job: pays interest on or charges a fee to every account of
+ * an AccountStore in one pass over its balance column, instead of a loop
+ * over Account objects. The column is split into ranges that fork/join
+ * spreads over the cores, and each range is run by a kernel: a plain loop,
+ * or with the PACKED layout one using the Vector API, which works on as
+ * many balances per instruction as the widest vector register holds.
+ *
+ * The Vector API of this JDK is an incubator module, so VectorKernel is
+ * compiled and run with --add-modules jdk.incubator.vector. It is only
+ * loaded by name; without the module the plain kernel is used.
+ *
+ * Interest is paid on positive balances only and rounded to the nearest
+ * cent, half up; the fee is charged to every balance under a minimum.
+ * Both kernels round alike, so their results are the same to the cent.
+ * Every other write to the store, through its own methods or through an
+ * AccountView, is held back during a pass, and what a pass adds or takes
+ * is counted in the expected total of the store.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class BatchPosting {
+
+	/**
+	 * One operation over a range of a packed or strided balance column
+	 */
+	interface Kernel {
+		/**
+		 * Multiplies the positive balances by factor, rounding half up
+		 * @return the cents added
+		 */
+		long interest(long[] cents, int from, int to, int shift, double factor);
+
+		/**
+		 * Takes fee from the balances under waivedFrom
+		 * @return the cents added, negative
+		 */
+		long fee(long[] cents, int from, int to, int shift, long fee, long waivedFrom);
+	}
+
+	/**
+	 * Slots per fork/join leaf, a multiple of every vector length
+	 */
+	static final int LEAF = 1 << 16;
+
+	private static final Kernel SCALAR = new ScalarKernel();
+	private static final Kernel VECTOR = loadVector();
+
+	private final ForkJoinPool pool;
+	private final boolean vectorize;
+
+	/**
+	 * @param pool where the ranges run
+	 * @param vectorize whether to use the Vector API kernel when it is
+	 *        there and the layout is PACKED
+	 */
+	public BatchPosting(ForkJoinPool pool, boolean vectorize) {
+		this.pool = pool;
+		this.vectorize = vectorize;
+	}
+
+	public BatchPosting() {
+		this(ForkJoinPool.commonPool(), true);
+	}
+
+	/**
+	 * @return whether the Vector API kernel could be loaded
+	 */
+	public static boolean isVectorAvailable() {
+		return VECTOR != null;
+	}
+
+	/**
+	 * Pays interest on every positive balance.
+	 * @param rate interest for the period, 0.01 for 1%
+	 * @return the interest paid in cents
+	 * @throws IllegalArgumentException if rate is not above -1
+	 */
+	public long applyInterest(AccountStore store, double rate) {
+		if (!(rate > -1) || Double.isInfinite(rate))
+			throw new IllegalArgumentException("Bad interest rate " + rate);
+		final double factor = 1 + rate;
+		final Kernel k = kernel(store);
+		return store.update((cents, size, shift) -> pool
+				.invoke(new Range(0, size, (from, to) -> k.interest(cents, from, to, shift, factor))));
+	}
+
+	/**
+	 * Charges a fee to every balance under a minimum.
+	 * @param feeCents the fee
+	 * @param waivedFromCents balances from this one up pay no fee
+	 * @return the fees taken in cents, as a positive number
+	 * @throws IllegalArgumentException if the fee is negative
+	 */
+	public long chargeFee(AccountStore store, long feeCents, long waivedFromCents) {
+		if (feeCents < 0)
+			throw new IllegalArgumentException("Negative fee " + feeCents);
+		final Kernel k = kernel(store);
+		return -store.update((cents, size, shift) -> pool.invoke(
+				new Range(0, size, (from, to) -> k.fee(cents, from, to, shift, feeCents, waivedFromCents))));
+	}
+
+	private Kernel kernel(AccountStore store) {
+		return vectorize && VECTOR != null && store.getLayout() == AccountStore.Layout.PACKED ? VECTOR : SCALAR;
+	}
+
+	private static Kernel loadVector() {
+		try {
+			return (Kernel) Class.forName("store.VectorKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// No jdk.incubator.vector module: VectorKernel cannot link
+			return null;
+		}
+	}
+
+	/**
+	 * The kernel call of one leaf
+	 */
+	private interface Leaf {
+		long run(int from, int to);
+	}
+
+	private static final class Range extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final Leaf leaf;
+
+		Range(int from, int to, Leaf leaf) {
+			this.from = from;
+			this.to = to;
+			this.leaf = leaf;
+		}
+
+		protected Long compute() {
+			if (to - from <= LEAF)
+				return leaf.run(from, to);
+			// Split on a leaf boundary so every leaf but the last is whole
+			int leaves = (to - from + LEAF - 1) / LEAF;
+			int mid = from + leaves / 2 * LEAF;
+			Range left = new Range(from, mid, leaf);
+			left.fork();
+			long right = new Range(mid, to, leaf).compute();
+			return left.join() + right;
+		}
+	}
+
+	/**
+	 * One balance at a time, for any layout
+	 */
+	static final class ScalarKernel implements Kernel {
+		public long interest(long[] cents, int from, int to, int shift, double factor) {
+			long delta = 0;
+			for (int i = from; i < to; i++) {
+				int j = i << shift;
+				long c = cents[j];
+				if (c > 0) {
+					long n = (long) (c * factor + 0.5);
+					cents[j] = n;
+					delta += n - c;
+				}
+			}
+			return delta;
+		}
+
+		public long fee(long[] cents, int from, int to, int shift, long fee, long waivedFrom) {
+			long delta = 0;
+			for (int i = from; i < to; i++) {
+				int j = i << shift;
+				if (cents[j] < waivedFrom) {
+					cents[j] -= fee;
+					delta -= fee;
+				}
+			}
+			return delta;
+		}
+	}
+
+}
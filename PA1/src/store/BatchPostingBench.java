@@ -0,0 +1,187 @@
+package store;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import engine.Account;
+import engine.Strategies;
+
+/**
+ * Class BatchPostingBench
+ * Times one interest pass and one fee pass over every account, per
+ * million accounts: on engine Account objects, one setBalance each, and
+ * with BatchPosting on an AccountStore, plain and vectorized, on one
+ * thread and, if there are more cores, on all of them. The results of the
+ * plain and the vectorized kernel are checked to be the same to the cent.
+ * Finally passes are run while other threads deposit, withdraw and set
+ * balances through AccountViews, and the total is checked to still add up.
+ *
+ * Usage: java --add-modules jdk.incubator.vector store.BatchPostingBench [accounts]
+ * Without --add-modules only the plain kernel runs. The engine loop runs
+ * on at most a million accounts.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class BatchPostingBench {
+
+	private static final double RATE = 0.0125;
+	private static final long FEE = 250;
+	private static final long WAIVED_FROM = 100000;
+	private static final int PASSES = 5;
+
+	public static void main(String[] args) throws InterruptedException {
+		int n;
+		try {
+			n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+			if (n < 1)
+				throw new IllegalArgumentException("Accounts must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d accounts, %d cores, vector API %s%n", n, cores,
+				BatchPosting.isVectorAvailable() ? "available" : "not available, plain kernel only");
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool all = ForkJoinPool.commonPool();
+
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;
+			if (!print)
+				System.out.println("Warming up");
+			else
+				System.out.printf("%-24s %16s %16s  %s%n", "", "interest ms/M", "fee ms/M", "result");
+
+			int m = Math.min(n, 1000000);
+			Account[] account = new Account[m];
+			SplittableRandom random = new SplittableRandom(1);
+			for (int i = 0; i < m; i++)
+				account[i] = new Account(i, "Customer", opening(random) / 100.0, Strategies.CAS);
+			long t = System.nanoTime();
+			for (int p = 0; p < PASSES; p++)
+				for (Account a : account)
+					if (a.getBalance() > 0)
+						a.setBalance(Math.round(a.getBalance() * (100 * (1 + RATE))) / 100.0);
+			double interest = (System.nanoTime() - t) / 1e6 / PASSES / (m / 1e6);
+			t = System.nanoTime();
+			for (int p = 0; p < PASSES; p++)
+				for (Account a : account)
+					if (a.getBalance() < WAIVED_FROM / 100.0)
+						a.setBalance(a.getBalance() - FEE / 100.0);
+			double fee = (System.nanoTime() - t) / 1e6 / PASSES / (m / 1e6);
+			account = null;
+			if (print)
+				System.out.printf("%-24s %16.2f %16.2f%n", "engine Account loop", interest, fee);
+
+			AccountStore reference = null;
+			for (int v = 0; v < 2; v++) {
+				boolean vectorize = v == 1;
+				if (vectorize && !BatchPosting.isVectorAvailable())
+					continue;
+				for (ForkJoinPool pool : new ForkJoinPool[] { single, all }) {
+					if (pool == all && all.getParallelism() == 1)
+						continue;
+					AccountStore store = store(n);
+					long expected = store.expectedTotalCents();
+					BatchPosting batch = new BatchPosting(pool, vectorize);
+					long paid = 0;
+					t = System.nanoTime();
+					for (int p = 0; p < PASSES; p++)
+						paid += batch.applyInterest(store, RATE);
+					interest = (System.nanoTime() - t) / 1e6 / PASSES / (n / 1e6);
+					long taken = 0;
+					t = System.nanoTime();
+					for (int p = 0; p < PASSES; p++)
+						taken += batch.chargeFee(store, FEE, WAIVED_FROM);
+					fee = (System.nanoTime() - t) / 1e6 / PASSES / (n / 1e6);
+
+					long total = store.totalCents();
+					String result = total == expected + paid - taken && total == store.expectedTotalCents()
+							? "total adds up" : "TOTAL DOES NOT ADD UP";
+					if (reference == null)
+						reference = store;
+					else
+						result += same(reference, store) ? ", same as plain" : ", DIFFERS FROM PLAIN";
+					if (print)
+						System.out.printf("%-24s %16.2f %16.2f  %s%n", (vectorize ? "vector" : "plain") + ", "
+								+ pool.getParallelism() + (pool.getParallelism() == 1 ? " thread" : " threads"),
+								interest, fee, result);
+				}
+			}
+		}
+		System.out.println("With writers: " + withWriters(all, Math.min(n, 1000000), Math.max(2, cores)));
+	}
+
+	/**
+	 * Runs interest and fee passes while threads write through AccountViews
+	 * @return whether the total still adds up
+	 */
+	private static String withWriters(ForkJoinPool pool, int n, int threads) throws InterruptedException {
+		AccountStore store = store(n);
+		BatchPosting batch = new BatchPosting(pool, BatchPosting.isVectorAvailable());
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread[] writer = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int seed = i;
+			writer[i] = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(seed);
+				while (running.get()) {
+					AccountView a = store.view(random.nextInt(n));
+					int kind = random.nextInt(3);
+					if (kind == 0)
+						a.deposit(random.nextInt(1, 100));
+					else if (kind == 1)
+						a.withdraw(random.nextInt(1, 100));
+					else
+						a.setBalance(random.nextInt(1000));
+				}
+			});
+			writer[i].start();
+		}
+		for (int p = 0; p < PASSES; p++) {
+			batch.applyInterest(store, RATE);
+			batch.chargeFee(store, FEE, WAIVED_FROM);
+		}
+		running.set(false);
+		for (Thread w : writer)
+			w.join();
+		return String.format("%d threads, %d passes: %s", threads, PASSES,
+				store.totalCents() == store.expectedTotalCents() ? "total adds up" : "TOTAL DOES NOT ADD UP");
+	}
+
+	/**
+	 * @return a balance in cents, mostly positive, some around the minimum
+	 *         that waives the fee
+	 */
+	private static long opening(SplittableRandom random) {
+		int kind = random.nextInt(10);
+		if (kind == 0)
+			return -random.nextLong(100000);
+		if (kind == 1)
+			return WAIVED_FROM + random.nextLong(-1, 2);
+		return random.nextLong(10000000);
+	}
+
+	private static AccountStore store(int n) {
+		AccountStore store = new AccountStore(n);
+		SplittableRandom random = new SplittableRandom(1);
+		for (int i = 0; i < n; i++)
+			store.add(i, "Customer", opening(random) / 100.0);
+		return store;
+	}
+
+	private static boolean same(AccountStore a, AccountStore b) {
+		for (int i = 0; i < a.size(); i++)
+			if (a.getCents(i) != b.getCents(i))
+				return false;
+		return true;
+	}
+
+}
@@ -0,0 +1,504 @@
+package store;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Class BulkLoader
+ * Applies a large text file of transactions to an AccountStore in
+ * parallel. Every line is one transaction:
+ *
+ *   acc,type,amount
+ *
+ * where acc is the account number, type is D for a deposit or W for a
+ * withdrawal and amount has at most two decimals, as in 1234,D,10.50.
+ *
+ * The file is split at line boundaries into one range per thread, and
+ * every thread reads its range through memory maps of up to 1 GB, copying
+ * 1 MB at a time into a reused byte array. The bytes are parsed there; no
+ * String or other object is made per line.
+ * The threads work in rounds. First each parses a block of lines, putting
+ * (slot, cents) pairs into one buffer per partition of the slots. After a
+ * barrier, each thread applies the buffers of its own partition from all
+ * threads, so every balance is written by one thread only and with a
+ * plain add. Memory use is a fixed number of buffers, whatever the file
+ * size.
+ *
+ * Nothing else may write to the store while a file is loaded. Lines with
+ * unknown account numbers or that do not parse are counted and skipped.
+ *
+ * Usage: java store.BulkLoader [lines [accounts [threads]]]
+ * writes a file of random transactions, loads it and reports GB/s, then
+ * loads a skewed file whose first half is all for one account, so that the
+ * threads finish their ranges in different rounds, and a far file that
+ * starts with 2.5 GB of blank lines, loaded with at least 8 threads so
+ * that ranges start past 2 GB. Every load checks that the total of the
+ * balances moved by the net amount of the file.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class BulkLoader {
+
+	/**
+	 * What one load did
+	 */
+	public static class Result {
+		public final long bytes;
+		public final long records;
+		public final long unknown;
+		public final long malformed;
+		public final long netCents;
+		public final long nanos;
+
+		Result(long bytes, long records, long unknown, long malformed, long netCents, long nanos) {
+			this.bytes = bytes;
+			this.records = records;
+			this.unknown = unknown;
+			this.malformed = malformed;
+			this.netCents = netCents;
+			this.nanos = nanos;
+		}
+
+		public double gigabytesPerSecond() {
+			return bytes / (double) nanos;
+		}
+
+		public String toString() {
+			return String.format("%d bytes, %d records, %d unknown accounts, %d malformed in %.3f s: %.2f GB/s, %.1fM records/s",
+					bytes, records, unknown, malformed, nanos / 1e9, gigabytesPerSecond(), records / (nanos / 1e3));
+		}
+	}
+
+	/**
+	 * Blank bytes before the transactions of the far file of main
+	 */
+	static final long FAR = 5L << 29;
+	/**
+	 * Largest memory map
+	 */
+	static final int WINDOW = 1 << 30;
+	/**
+	 * Bytes copied out of the map at a time: reading a heap array is much
+	 * cheaper per byte than reading the mapped buffer
+	 */
+	static final int CHUNK = 1 << 20;
+	/**
+	 * Records per partition buffer
+	 */
+	static final int BLOCK = 1 << 15;
+
+	private final AccountStore store;
+	private final int threads;
+
+	/**
+	 * @param store where the transactions are applied
+	 * @param threads parser threads, also the number of partitions
+	 */
+	public BulkLoader(AccountStore store, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be positive: " + threads);
+		this.store = store;
+		this.threads = threads;
+	}
+
+	/**
+	 * Applies every transaction of a file. If it fails, part of the file
+	 * may have been applied.
+	 */
+	public Result load(Path file) throws IOException {
+		long start = System.nanoTime();
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = ch.size();
+			long[] bounds = split(ch, size);
+			Round round = new Round(threads);
+			Worker[] w = new Worker[threads];
+			for (int i = 0; i < threads; i++)
+				w[i] = new Worker(ch, i, bounds[i], bounds[i + 1], w, round);
+			for (Worker x : w)
+				x.start();
+			long records = 0, unknown = 0, malformed = 0, net = 0;
+			for (Worker x : w) {
+				try {
+					x.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while loading " + file, e);
+				}
+				records += x.records;
+				unknown += x.unknown;
+				malformed += x.malformed;
+				net += x.net;
+			}
+			store.addNet(net);
+			if (round.failure != null)
+				throw new IOException("Loading " + file + " failed", round.failure);
+			return new Result(size, records, unknown, malformed, net, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return threads + 1 offsets, each range starting at the start of a line
+	 */
+	private long[] split(FileChannel ch, long size) throws IOException {
+		long[] bounds = new long[threads + 1];
+		bounds[threads] = size;
+		ByteBuffer buf = ByteBuffer.allocate(4096);
+		for (int i = 1; i < threads; i++) {
+			long p = Math.max(bounds[i - 1], size / threads * i);
+			// Starts after the first newline at or after p - 1
+			long q = p == 0 ? 0 : p - 1;
+			long found = size;
+			while (q < size) {
+				buf.clear();
+				int n = ch.read(buf, q);
+				if (n <= 0)
+					break;
+				int k = 0;
+				while (k < n && buf.get(k) != '\n')
+					k++;
+				if (k < n) {
+					found = q + k + 1;
+					break;
+				}
+				q += n;
+			}
+			bounds[i] = p == 0 ? 0 : found;
+		}
+		return bounds;
+	}
+
+	/**
+	 * The barrier between the parse and apply phases, and the decision to
+	 * stop, taken once per round by the barrier action
+	 */
+	private static final class Round {
+		final CyclicBarrier barrier;
+		Worker[] workers;
+		volatile boolean finished;
+		volatile Throwable failure;
+
+		Round(int threads) {
+			barrier = new CyclicBarrier(threads, () -> {
+				boolean all = true;
+				for (Worker w : workers)
+					all &= w.done;
+				finished = all || failure != null;
+			});
+		}
+	}
+
+	private final class Worker extends Thread {
+		private final FileChannel ch;
+		private final int index;
+		private final long to;
+		private final Worker[] all;
+		private final Round round;
+
+		private long pos;
+		private MappedByteBuffer window;
+		private long windowStart;
+		private long windowEnd;
+		/**
+		 * The part of the window being parsed, copied out in one go
+		 */
+		private final byte[] chunk = new byte[CHUNK];
+		private long chunkStart;
+		private int chunkLen;
+
+		final int[][] slot = new int[threads][BLOCK];
+		final long[][] delta = new long[threads][BLOCK];
+		final int[] count = new int[threads];
+		/**
+		 * Set when a partition buffer has filled up
+		 */
+		private boolean full;
+		volatile boolean done;
+
+		long records;
+		long unknown;
+		long malformed;
+		long net;
+
+		Worker(FileChannel ch, int index, long from, long to, Worker[] all, Round round) {
+			super("bulk-loader-" + index);
+			this.ch = ch;
+			this.index = index;
+			this.pos = from;
+			this.to = to;
+			this.all = all;
+			this.round = round;
+			round.workers = all;
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					try {
+						// A worker that is done keeps taking part in the
+						// rounds, with nothing to add
+						if (done)
+							Arrays.fill(count, 0);
+						else
+							parseBlock();
+					} catch (IOException | RuntimeException e) {
+						round.failure = e;
+						done = true;
+					}
+					round.barrier.await();
+					applyPartition();
+					round.barrier.await();
+					if (round.finished)
+						return;
+				}
+			} catch (InterruptedException | BrokenBarrierException e) {
+				round.failure = e;
+			}
+		}
+
+		/**
+		 * Applies partition index of every worker's buffers
+		 */
+		private void applyPartition() {
+			for (Worker w : all) {
+				int[] s = w.slot[index];
+				long[] d = w.delta[index];
+				int n = w.count[index];
+				for (int i = 0; i < n; i++)
+					store.addOwned(s[i], d[i]);
+			}
+		}
+
+		/**
+		 * Parses lines until a partition buffer is full or the range ends
+		 */
+		private void parseBlock() throws IOException {
+			Arrays.fill(count, 0);
+			full = false;
+			while (pos < to) {
+				// Before the first fill the chunk is empty and pos may be GBs past it
+				long i = pos - chunkStart;
+				int next = i >= 0 && i < chunkLen ? parseLine((int) i) : -1;
+				if (next < 0) {
+					// The line goes past the chunk: copy again from its start
+					fill(pos);
+					next = parseLine(0);
+					if (next < 0)
+						throw new IllegalStateException("Line longer than " + CHUNK + " bytes at " + pos);
+				}
+				pos = chunkStart + next;
+				if (full)
+					return;
+			}
+			done = true;
+		}
+
+		/**
+		 * Copies the next chunk of the range, starting at start, out of the
+		 * memory map, mapping the next window first if needed
+		 */
+		private void fill(long start) throws IOException {
+			if (window == null || start + CHUNK > windowEnd && windowEnd < to) {
+				windowStart = start;
+				windowEnd = Math.min(to, start + WINDOW);
+				window = ch.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+			}
+			chunkStart = start;
+			chunkLen = (int) Math.min(CHUNK, windowEnd - start);
+			window.get((int) (start - windowStart), chunk, 0, chunkLen);
+		}
+
+		/**
+		 * Parses the line starting at index i of the chunk.
+		 * @return where the next line starts in the chunk, or -1 if the
+		 *         chunk ends before the line does and more of the range follows
+		 */
+		private int parseLine(int i) {
+			byte[] b = chunk;
+			int limit = chunkLen;
+			int end = i;
+			while (end < limit && b[end] != '\n')
+				end++;
+			if (end == limit && chunkStart + limit < to)
+				return -1;
+			int next = Math.min(end + 1, limit);
+			if (end > i && b[end - 1] == '\r')
+				end--;
+			if (end == i)
+				return next;
+
+			// acc
+			long acc = 0;
+			int start = i;
+			byte c;
+			while (i < end && (c = b[i]) >= '0' && c <= '9' && i - start < 10) {
+				acc = acc * 10 + (c - '0');
+				i++;
+			}
+			if (i == start || acc > Integer.MAX_VALUE || i + 2 >= end || b[i] != ',' || b[i + 2] != ',') {
+				malformed++;
+				return next;
+			}
+			byte type = b[i + 1];
+			if (type != 'D' && type != 'W') {
+				malformed++;
+				return next;
+			}
+			i += 3;
+
+			// amount
+			long cents = 0;
+			start = i;
+			while (i < end && (c = b[i]) >= '0' && c <= '9' && i - start < 15) {
+				cents = cents * 10 + (c - '0');
+				i++;
+			}
+			boolean ok = i > start;
+			cents *= 100;
+			if (ok && i < end && b[i] == '.') {
+				i++;
+				int scale = 10;
+				while (i < end && scale > 0 && (c = b[i]) >= '0' && c <= '9') {
+					cents += (c - '0') * scale;
+					scale /= 10;
+					i++;
+				}
+			}
+			if (!ok || i != end) {
+				malformed++;
+				return next;
+			}
+
+			int s = store.slotOf((int) acc);
+			if (s < 0) {
+				unknown++;
+				return next;
+			}
+			if (type == 'W')
+				cents = -cents;
+			int part = s % threads;
+			int n = count[part]++;
+			slot[part][n] = s;
+			delta[part][n] = cents;
+			net += cents;
+			records++;
+			full = n + 1 == BLOCK;
+			return next;
+		}
+	}
+
+	/**
+	 * Writes a file of random transactions on the accounts of a store.
+	 * @return the net amount of the file in cents
+	 */
+	public static long generate(Path file, AccountStore store, long lines, long seed) throws IOException {
+		return generate(file, store, lines, seed, 0, 0);
+	}
+
+	/**
+	 * Writes a file of random transactions on the accounts of a store, the
+	 * first hot lines of them all for its first account, after blank bytes
+	 * of empty lines.
+	 * @return the net amount of the file in cents
+	 */
+	public static long generate(Path file, AccountStore store, long lines, long seed, long hot, long blank)
+			throws IOException {
+		SplittableRandom random = new SplittableRandom(seed);
+		byte[] line = new byte[32];
+		long net = 0;
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+			byte[] empty = new byte[CHUNK];
+			Arrays.fill(empty, (byte) '\n');
+			for (long k = 0; k < blank; k += empty.length)
+				out.write(empty, 0, (int) Math.min(empty.length, blank - k));
+			for (long k = 0; k < lines; k++) {
+				int acc = store.getAcc(k < hot ? 0 : random.nextInt(store.size()));
+				boolean deposit = random.nextBoolean();
+				int cents = random.nextInt(1, 100000);
+				net += deposit ? cents : -cents;
+				int n = 0;
+				n = digits(line, n, acc);
+				line[n++] = ',';
+				line[n++] = (byte) (deposit ? 'D' : 'W');
+				line[n++] = ',';
+				n = digits(line, n, cents / 100);
+				line[n++] = '.';
+				line[n++] = (byte) ('0' + cents / 10 % 10);
+				line[n++] = (byte) ('0' + cents % 10);
+				line[n++] = '\n';
+				out.write(line, 0, n);
+			}
+		}
+		return net;
+	}
+
+	private static int digits(byte[] b, int n, int value) {
+		int start = n;
+		do {
+			b[n++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		for (int i = start, j = n - 1; i < j; i++, j--) {
+			byte t = b[i];
+			b[i] = b[j];
+			b[j] = t;
+		}
+		return n;
+	}
+
+	public static void main(String[] args) throws IOException {
+		long lines;
+		int accounts;
+		int threads;
+		try {
+			lines = args.length > 0 ? Long.parseLong(args[0]) : 20000000;
+			accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+			threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+			if (lines < 0 || accounts < 1 || threads < 1)
+				throw new IllegalArgumentException("Need lines >= 0, accounts and threads > 0");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		AccountStore store = new AccountStore(accounts);
+		for (int i = 0; i < accounts; i++)
+			store.add(100000 + i, "Customer" + (i % 1000), 1000);
+
+		Path file = Files.createTempFile("transactions", ".csv");
+		try {
+			String[] kind = { "random", "skewed", "far" };
+			for (int k = 0; k < kind.length; k++) {
+				long start = System.nanoTime();
+				long net = generate(file, store, lines, 7 + k, k == 1 ? lines / 2 : 0, k == 2 ? FAR : 0);
+				System.out.printf("Wrote %d %s lines, %d bytes in %.1f s%n", lines, kind[k], Files.size(file),
+						(System.nanoTime() - start) / 1e9);
+
+				long expected = store.totalCents() + net;
+				int t = k == 2 ? Math.max(threads, 8) : threads;
+				Result r = new BulkLoader(store, t).load(file);
+				System.out.println("Loaded with " + t + " threads: " + r);
+				System.out.printf("Total %.2f, expected %.2f: %s%n", store.totalCents() / 100.0, expected / 100.0,
+						store.totalCents() == expected ? "match" : "DO NOT MATCH");
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
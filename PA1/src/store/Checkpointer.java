@@ -0,0 +1,100 @@
+package store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import engine.Journal;
+
+/**
+ * Class Checkpointer
+ * A background thread that writes a Snapshot of its source every interval,
+ * and once more when stopped. With a journal, each snapshot records the
+ * journal position it was started at.
+ *
+ * shutdown() wakes the thread by a signal, not an interrupt: an interrupt
+ * during a checkpoint would close the file channel under it and lose the
+ * last snapshot.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Checkpointer extends Thread {
+
+	private final Snapshot.Source source;
+	private final Path file;
+	private final long intervalMillis;
+	private final Journal journal;
+	private final Object wakeup = new Object();
+	private volatile boolean running = true;
+	private volatile int checkpoints;
+
+	public Checkpointer(Snapshot.Source source, Path file, long intervalMillis) {
+		this(source, file, intervalMillis, null);
+	}
+
+	/**
+	 * @param journal the journal the accounts of the source append to, or null
+	 */
+	public Checkpointer(Snapshot.Source source, Path file, long intervalMillis, Journal journal) {
+		super("checkpointer");
+		this.source = source;
+		this.file = file;
+		this.intervalMillis = intervalMillis;
+		this.journal = journal;
+		setDaemon(true);
+	}
+
+	public void run() {
+		boolean last = false;
+		while (!last) {
+			synchronized (wakeup) {
+				long deadline = System.currentTimeMillis() + intervalMillis;
+				long left;
+				while (running && (left = deadline - System.currentTimeMillis()) > 0) {
+					try {
+						wakeup.wait(left);
+					} catch (InterruptedException e) {
+						// Not how shutdown() stops us; take it as a stop all the same
+						running = false;
+					}
+				}
+				last = !running;
+			}
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Stops the thread after one last checkpoint and waits for it
+	 */
+	public void shutdown() throws InterruptedException {
+		synchronized (wakeup) {
+			running = false;
+			wakeup.notifyAll();
+		}
+		join();
+	}
+
+	/**
+	 * @return the number of snapshots written so far
+	 */
+	public int getCheckpoints() {
+		return checkpoints;
+	}
+
+	private void checkpoint() {
+		try {
+			// Taken first, so the snapshot holds every record up to it
+			long position = journal == null ? 0 : journal.getPosition();
+			Snapshot.write(source, file, position);
+			checkpoints++;
+		} catch (IOException e) {
+			System.err.println("Checkpointer: could not write " + file + ": " + e.getMessage());
+		}
+	}
+
+}
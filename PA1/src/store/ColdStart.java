@@ -0,0 +1,62 @@
+package store;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import engine.Account;
+import engine.Strategies;
+
+/**
+ * Class ColdStart
+ * Compares two ways to get n accounts back after a restart: rebuilding an
+ * AccountStore from the snapshot account by account, and mapping the
+ * snapshot with LazyAccounts and touching only a few accounts.
+ *
+ * Usage: java store.ColdStart [number of accounts]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class ColdStart {
+
+	public static void main(String[] args) throws Exception {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		Path file = Files.createTempFile("accounts", ".snap");
+		try {
+			AccountStore store = new AccountStore(n);
+			for (int i = 0; i < n; i++)
+				store.add(100000 + i, "Customer" + (i % 1000), i % 10000);
+
+			long t0 = System.nanoTime();
+			Snapshot.write(store, file);
+			long t1 = System.nanoTime();
+			System.out.printf("Checkpoint of %d accounts: %d ms, %d MB%n", n, (t1 - t0) / 1000000,
+					Files.size(file) >> 20);
+
+			t0 = System.nanoTime();
+			Snapshot snapshot = Snapshot.open(file);
+			AccountStore eager = new AccountStore(n);
+			for (int i = 0; i < snapshot.size(); i++)
+				eager.add(snapshot.getAcc(i), snapshot.getName(i), snapshot.getCents(i) / 100.0);
+			t1 = System.nanoTime();
+			System.out.printf("Eager rebuild:    %8.2f ms%n", (t1 - t0) / 1e6);
+
+			t0 = System.nanoTime();
+			LazyAccounts lazy = new LazyAccounts(Snapshot.open(file), Strategies.CAS);
+			Account first = lazy.get(100000);
+			Account last = lazy.get(100000 + n - 1);
+			t1 = System.nanoTime();
+			System.out.printf("Lazy open + 2 lookups: %8.2f ms, %d of %d accounts materialized%n",
+					(t1 - t0) / 1e6, lazy.materialized(), lazy.size());
+			System.out.println(first);
+			System.out.println(last);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
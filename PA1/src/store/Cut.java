@@ -0,0 +1,72 @@
+package store;
+
+/**
+ * Class Cut
+ * The balances of a set of accounts frozen at one moment, together with
+ * the total they should add up to at that moment. A cut is a copy: it does
+ * not change when the accounts it was taken from do.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Cut implements Snapshot.Source {
+
+	private final Snapshot.Source accounts;
+	private final long[] cents;
+	private final long expectedTotalCents;
+
+	/**
+	 * @param accounts where account numbers and names are looked up, which
+	 *        must not change
+	 * @param cents the balances, not copied
+	 * @param expectedTotalCents what the balances should add up to
+	 */
+	Cut(Snapshot.Source accounts, long[] cents, long expectedTotalCents) {
+		this.accounts = accounts;
+		this.cents = cents;
+		this.expectedTotalCents = expectedTotalCents;
+	}
+
+	/**
+	 * Copies the balances of a source one by one. Only consistent if
+	 * nothing writes to the source meanwhile.
+	 */
+	public static Cut copyOf(Snapshot.Source source) {
+		long[] cents = new long[source.size()];
+		long total = 0;
+		for (int i = 0; i < cents.length; i++) {
+			cents[i] = source.getCents(i);
+			total += cents[i];
+		}
+		return new Cut(source, cents, total);
+	}
+
+	/**
+	 * @return the total the balances should add up to: the opening balances
+	 *         plus the net deposits before the cut
+	 */
+	public long getExpectedTotalCents() {
+		return expectedTotalCents;
+	}
+
+	public int size() {
+		return cents.length;
+	}
+
+	public int getAcc(int slot) {
+		return accounts.getAcc(slot);
+	}
+
+	public String getName(int slot) {
+		return accounts.getName(slot);
+	}
+
+	public long getCents(int slot) {
+		return cents[slot];
+	}
+
+}
@@ -0,0 +1,126 @@
+package store;
+
+import engine.Account;
+import engine.Strategies;
+
+/**
+ * Class FalseSharingBench
+ * Shows what false sharing costs. Every thread updates its own account and
+ * no account is shared, so in theory the threads never contend. With the
+ * PACKED layout the balances of neighbouring accounts sit in the same cache
+ * line, which then moves between the cores on every update; with PADDED
+ * each balance has its own lines. For reference the same is done on engine
+ * accounts with the cas strategy, allocated back to back as AccountManager
+ * does. Store updates also pass the store's write gate and count the net
+ * deposit, both striped and the same for either layout.
+ *
+ * On a single core there is no other cache to bounce between, and all
+ * layouts run at the same speed.
+ *
+ * Usage: java store.FalseSharingBench [threads [seconds]]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class FalseSharingBench {
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads;
+		double seconds;
+		try {
+			threads = args.length > 0 ? Integer.parseInt(args[0])
+					: Math.max(2, Runtime.getRuntime().availableProcessors());
+			seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+			if (threads < 1 || seconds <= 0)
+				throw new IllegalArgumentException("Threads and seconds must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.printf("%d threads, %d cores, one account per thread%n", threads,
+				Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-14s %14s %10s%n", "layout", "ops/s", "ns/op");
+
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;
+			for (AccountStore.Layout layout : AccountStore.Layout.values()) {
+				final AccountStore store = new AccountStore(threads, layout);
+				for (int i = 0; i < threads; i++)
+					store.add(1000 + i, "Customer" + i, 1000);
+				Updater[] u = new Updater[threads];
+				for (int i = 0; i < threads; i++) {
+					final int slot = i;
+					u[i] = new Updater() {
+						void update() {
+							store.addCents(slot, 1);
+						}
+					};
+				}
+				report(print, layout.name().toLowerCase(), run(u, seconds), threads);
+			}
+
+			final Account[] account = new Account[threads];
+			for (int i = 0; i < threads; i++)
+				// Enough that tryWithdraw never runs out and always writes
+				account[i] = new Account(1000 + i, "Customer" + i, 1e12, Strategies.CAS);
+			Updater[] u = new Updater[threads];
+			for (int i = 0; i < threads; i++) {
+				final Account a = account[i];
+				u[i] = new Updater() {
+					void update() {
+						a.tryWithdraw(0.01);
+					}
+				};
+			}
+			report(print, "engine cas", run(u, seconds), threads);
+		}
+	}
+
+	/**
+	 * @return operations per second of all threads together
+	 */
+	private static double run(Updater[] u, double seconds) throws InterruptedException {
+		long start = System.nanoTime();
+		for (Updater x : u)
+			x.start();
+		Thread.sleep((long) (seconds * 1000));
+		for (Updater x : u)
+			x.running = false;
+		long ops = 0;
+		for (Updater x : u) {
+			x.join();
+			ops += x.ops;
+		}
+		return ops / ((System.nanoTime() - start) / 1e9);
+	}
+
+	private static void report(boolean print, String name, double opsPerSecond, int threads) {
+		if (print)
+			System.out.printf("%-14s %14.0f %10.2f%n", name, opsPerSecond, 1e9 * threads / opsPerSecond);
+	}
+
+	/**
+	 * One thread updating its own account until stopped
+	 */
+	private abstract static class Updater extends Thread {
+		volatile boolean running = true;
+		long ops;
+
+		abstract void update();
+
+		public void run() {
+			long n = 0;
+			while (running) {
+				update();
+				n++;
+			}
+			ops = n;
+		}
+	}
+
+}
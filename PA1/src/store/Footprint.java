@@ -0,0 +1,52 @@
+package store;
+
+/**
+ * Class Footprint
+ * Compares the heap taken by n engine.Account objects with that of an
+ * AccountStore holding the same accounts.
+ *
+ * Usage: java store.Footprint [number of accounts]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Footprint {
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		// A realistic number of distinct names, shared by many customers
+		String[] names = new String[1000];
+		for (int i = 0; i < names.length; i++)
+			names[i] = "Customer" + i;
+
+		long base = usedHeap();
+		engine.Account[] accounts = new engine.Account[n];
+		for (int i = 0; i < n; i++)
+			accounts[i] = new engine.Account(i, names[i % names.length], 1000, engine.Strategies.DEFAULT);
+		long objects = usedHeap() - base;
+		System.out.printf("engine.Account[]: %8.1f MB, %6.1f bytes per account%n",
+				objects / 1048576.0, (double) objects / n);
+		accounts = null;
+
+		base = usedHeap();
+		AccountStore store = new AccountStore(n);
+		for (int i = 0; i < n; i++)
+			store.add(i, names[i % names.length], 1000);
+		long columns = usedHeap() - base;
+		System.out.printf("AccountStore:     %8.1f MB, %6.1f bytes per account%n",
+				columns / 1048576.0, (double) columns / n);
+		System.out.println("Total balance " + store.totalCents() / 100.0);
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}
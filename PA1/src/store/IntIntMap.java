@@ -0,0 +1,94 @@
+package store;
+
+import java.util.Arrays;
+
+/**
+ * Class IntIntMap
+ * An open addressing hash map from int keys to int values, kept in two
+ * primitive arrays with linear probing, so a million entries cost about
+ * 16 MB instead of the boxed Integers and entry objects of a HashMap.
+ * Integer.MIN_VALUE marks a free slot and cannot be used as a key.
+ * Not thread-safe for writers; see AccountStore for how it is published.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+final class IntIntMap {
+
+	static final int FREE = Integer.MIN_VALUE;
+
+	private final int[] keys;
+	private final int[] values;
+	private final int mask;
+	private int size;
+
+	/**
+	 * @param expected number of keys the map must hold, at most half full
+	 */
+	IntIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		Arrays.fill(keys, FREE);
+	}
+
+	/**
+	 * @return the value of key, or -1 if it is absent
+	 */
+	int get(int key) {
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			int k = keys[i];
+			if (k == key)
+				return values[i];
+			if (k == FREE)
+				return -1;
+		}
+	}
+
+	/**
+	 * Adds a key that is not in the map yet.
+	 * @throws IllegalArgumentException if the key is FREE or already present
+	 * @throws IllegalStateException if the map is full
+	 */
+	void putNew(int key, int value) {
+		if (key == FREE)
+			throw new IllegalArgumentException("Key " + key + " is reserved");
+		if (size * 2 >= keys.length)
+			throw new IllegalStateException("Map is full at " + size + " keys");
+		int i = hash(key) & mask;
+		while (keys[i] != FREE) {
+			if (keys[i] == key)
+				throw new IllegalArgumentException("Duplicate key " + key);
+			i = (i + 1) & mask;
+		}
+		values[i] = value;
+		keys[i] = key;
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the key table, FREE where empty; Snapshot stores it as is
+	 */
+	int[] keys() {
+		return keys;
+	}
+
+	int[] values() {
+		return values;
+	}
+
+	static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
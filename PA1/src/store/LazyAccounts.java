@@ -0,0 +1,119 @@
+package store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+
+import engine.Account;
+import engine.Journal;
+import engine.SyncStrategy;
+
+/**
+ * Class LazyAccounts
+ * The accounts of a Snapshot as engine.Account objects, each created the
+ * first time it is asked for. Opening costs nothing per account, so a
+ * restart with millions of accounts is ready at once and only pays for the
+ * accounts that are actually used.
+ *
+ * As a Snapshot.Source it gives the live balance of materialized accounts
+ * and the snapshot balance of the others, so it can be checkpointed again.
+ * After a crash recover() brings it up to date from the journal.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class LazyAccounts implements Snapshot.Source {
+
+	private final Snapshot snapshot;
+	private final SyncStrategy strategy;
+	private final ConcurrentHashMap<Integer, Account> live = new ConcurrentHashMap<Integer, Account>();
+
+	/**
+	 * @param snapshot the balances to start from
+	 * @param strategy how the materialized accounts are guarded
+	 */
+	public LazyAccounts(Snapshot snapshot, SyncStrategy strategy) {
+		this.snapshot = snapshot;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * @return the account with the given number, created on first use, or null
+	 */
+	public Account get(int acc) {
+		int slot = snapshot.slotOf(acc);
+		return slot < 0 ? null : materialize(slot);
+	}
+
+	/**
+	 * @return the account in the given slot of the snapshot, created on first use
+	 */
+	public Account materialize(final int slot) {
+		Account a = live.get(slot);
+		if (a != null)
+			return a;
+		return live.computeIfAbsent(slot, s -> new Account(snapshot.getAcc(s), snapshot.getName(s),
+				snapshot.getCents(s) / 100.0, strategy));
+	}
+
+	/**
+	 * @return how many accounts have been created so far
+	 */
+	public int materialized() {
+		return live.size();
+	}
+
+	public int size() {
+		return snapshot.size();
+	}
+
+	public int getAcc(int slot) {
+		return snapshot.getAcc(slot);
+	}
+
+	public String getName(int slot) {
+		Account a = live.get(slot);
+		return a != null ? a.getName() : snapshot.getName(slot);
+	}
+
+	public long getCents(int slot) {
+		Account a = live.get(slot);
+		return a != null ? AccountStore.toCents(a.getBalance()) : snapshot.getCents(slot);
+	}
+
+	public long getCents(int slot, long[] position) {
+		Account a = live.get(slot);
+		if (a == null) {
+			position[0] = snapshot.getJournalPosition(slot);
+			return snapshot.getCents(slot);
+		}
+		long cents = a.getCents(position);
+		// Nothing journaled since it was materialized
+		position[0] = Math.max(position[0], snapshot.getJournalPosition(slot));
+		return cents;
+	}
+
+	/**
+	 * Applies the records of a journal that the snapshot does not hold:
+	 * those past the position of the journal at the checkpoint, and of
+	 * those only the ones past the position of their account. The accounts
+	 * they touch are materialized. Call it before the accounts are used.
+	 * @param journal the directory of the journal
+	 * @return the number of records applied
+	 */
+	public long recover(Path journal) throws IOException {
+		return Journal.restore(journal, snapshot.getJournalPosition(), new Journal.Target() {
+			public Account get(int acc, long position) {
+				int slot = snapshot.slotOf(acc);
+				if (slot < 0 || position <= snapshot.getJournalPosition(slot))
+					return null;
+				return materialize(slot);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,342 @@
+package store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import engine.Account;
+
+/**
+ * Class LedgerAuditor
+ * Checks that no money was created or lost: the balances must add up to
+ * the opening balances plus the net deposits. It also looks at every
+ * account on its own and reports anomalies: a negative balance, an account
+ * number that differs from the opening one, or a balance that differs from
+ * its own opening balance plus its own net deposits when those are known.
+ *
+ * The accounts are split into ranges summed and checked in parallel by
+ * fork/join. Offline, it compares the opening and final balances of a run
+ * once the threads are done. Online, it audits a Cut of an AccountStore,
+ * which holds writers back only while the cut is copied.
+ *
+ * Usage: java store.LedgerAuditor [accounts [threads [seconds]]]
+ * runs writers on an AccountStore and audits it online every 250 ms.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class LedgerAuditor {
+
+	/**
+	 * What an anomaly is about
+	 */
+	public enum Kind { NEGATIVE, ACCOUNT_CHANGED, UNEXPECTED_BALANCE }
+
+	/**
+	 * One account that failed a check
+	 */
+	public static class Anomaly {
+		public final Kind kind;
+		public final int slot;
+		public final int acc;
+		public final long cents;
+		public final long expectedCents;
+
+		Anomaly(Kind kind, int slot, int acc, long cents, long expectedCents) {
+			this.kind = kind;
+			this.slot = slot;
+			this.acc = acc;
+			this.cents = cents;
+			this.expectedCents = expectedCents;
+		}
+
+		public String toString() {
+			return kind + " slot " + slot + " account " + acc + ": " + cents + " cents, expected "
+					+ expectedCents;
+		}
+	}
+
+	/**
+	 * The result of one audit
+	 */
+	public static class Report {
+		public final int accounts;
+		public final long expectedCents;
+		public final long actualCents;
+		public final long anomalyCount;
+		/**
+		 * The first anomalies found, in slot order, at most the limit of
+		 * the auditor
+		 */
+		public final List<Anomaly> anomalies;
+		public final long nanos;
+
+		Report(int accounts, long expectedCents, long actualCents, long anomalyCount, List<Anomaly> anomalies,
+				long nanos) {
+			this.accounts = accounts;
+			this.expectedCents = expectedCents;
+			this.actualCents = actualCents;
+			this.anomalyCount = anomalyCount;
+			this.anomalies = Collections.unmodifiableList(anomalies);
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return true if the balances add up to what they should
+		 */
+		public boolean isConserved() {
+			return expectedCents == actualCents;
+		}
+
+		/**
+		 * @return true if conserved and no account is anomalous
+		 */
+		public boolean isClean() {
+			return isConserved() && anomalyCount == 0;
+		}
+
+		public String toString() {
+			return String.format("%d accounts, total %.2f, expected %.2f, %s, %d anomalies, audited in %.1f ms",
+					accounts, actualCents / 100.0, expectedCents / 100.0,
+					isConserved() ? "conserved" : "NOT CONSERVED", anomalyCount, nanos / 1e6);
+		}
+	}
+
+	/**
+	 * Accounts per fork/join leaf
+	 */
+	static final int LEAF = 1 << 14;
+
+	private final ForkJoinPool pool;
+	private final int maxAnomalies;
+
+	/**
+	 * @param pool where the audit runs
+	 * @param maxAnomalies how many anomalies a report lists at most
+	 */
+	public LedgerAuditor(ForkJoinPool pool, int maxAnomalies) {
+		this.pool = pool;
+		this.maxAnomalies = maxAnomalies;
+	}
+
+	public LedgerAuditor() {
+		this(ForkJoinPool.commonPool(), 100);
+	}
+
+	/**
+	 * Audits a run that is over: every account must hold its opening
+	 * balance plus its net deposits.
+	 * @param opening the balances before the run, a Cut for instance
+	 * @param current the balances now
+	 * @param netCents deposits minus withdrawals of every slot
+	 * @throws IllegalArgumentException if the sizes differ
+	 */
+	public Report audit(Snapshot.Source opening, Snapshot.Source current, long[] netCents) {
+		if (opening.size() != current.size() || netCents.length != current.size())
+			throw new IllegalArgumentException("Opening, current and net sizes differ: " + opening.size()
+					+ ", " + current.size() + ", " + netCents.length);
+		return run(new Range(opening, current, netCents, 0, current.size()), 0);
+	}
+
+	/**
+	 * Audits balances against the total they should add up to; only
+	 * negative balances can be told apart per account.
+	 */
+	public Report audit(Snapshot.Source current, long expectedTotalCents) {
+		return run(new Range(null, current, null, 0, current.size()), expectedTotalCents);
+	}
+
+	/**
+	 * Audits a consistent cut of a store while its writers go on.
+	 */
+	public Report audit(AccountStore store) {
+		Cut cut = store.cut();
+		return audit(cut, cut.getExpectedTotalCents());
+	}
+
+	/**
+	 * @param expectedTotalCents added to what the ranges expect
+	 */
+	private Report run(Range task, long expectedTotalCents) {
+		long start = System.nanoTime();
+		Partial p = pool.invoke(task);
+		return new Report(task.current.size(), p.expected + expectedTotalCents, p.actual, p.anomalyCount,
+				p.anomalies, System.nanoTime() - start);
+	}
+
+	/**
+	 * Sums and anomalies of one range of slots
+	 */
+	private final class Partial {
+		long expected;
+		long actual;
+		long anomalyCount;
+		final List<Anomaly> anomalies = new ArrayList<Anomaly>();
+
+		void add(Anomaly a) {
+			anomalyCount++;
+			if (anomalies.size() < maxAnomalies)
+				anomalies.add(a);
+		}
+
+		Partial merge(Partial right) {
+			expected += right.expected;
+			actual += right.actual;
+			anomalyCount += right.anomalyCount;
+			for (Anomaly a : right.anomalies)
+				if (anomalies.size() < maxAnomalies)
+					anomalies.add(a);
+			return this;
+		}
+	}
+
+	private final class Range extends RecursiveTask<Partial> {
+		private static final long serialVersionUID = 1L;
+
+		private final Snapshot.Source opening;
+		private final Snapshot.Source current;
+		private final long[] net;
+		private final int from;
+		private final int to;
+
+		Range(Snapshot.Source opening, Snapshot.Source current, long[] net, int from, int to) {
+			this.opening = opening;
+			this.current = current;
+			this.net = net;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Partial compute() {
+			if (to - from > LEAF) {
+				int mid = (from + to) >>> 1;
+				Range left = new Range(opening, current, net, from, mid);
+				left.fork();
+				Partial right = new Range(opening, current, net, mid, to).compute();
+				return left.join().merge(right);
+			}
+			Partial p = new Partial();
+			for (int i = from; i < to; i++) {
+				long cents = current.getCents(i);
+				p.actual += cents;
+				if (opening != null) {
+					int acc = current.getAcc(i);
+					if (opening.getAcc(i) != acc)
+						p.add(new Anomaly(Kind.ACCOUNT_CHANGED, i, acc, cents, opening.getAcc(i)));
+					long expected = opening.getCents(i) + net[i];
+					p.expected += expected;
+					if (cents != expected)
+						p.add(new Anomaly(Kind.UNEXPECTED_BALANCE, i, acc, cents, expected));
+				}
+				if (cents < 0)
+					p.add(new Anomaly(Kind.NEGATIVE, i, current.getAcc(i), cents, 0));
+			}
+			return p;
+		}
+	}
+
+	/**
+	 * A live view of engine accounts as a source, balances rounded to cents
+	 */
+	public static Snapshot.Source source(final Account[] accounts) {
+		return new Snapshot.Source() {
+			public int size() {
+				return accounts.length;
+			}
+
+			public int getAcc(int slot) {
+				return accounts[slot].getAcc();
+			}
+
+			public String getName(int slot) {
+				return accounts[slot].getName();
+			}
+
+			public long getCents(int slot) {
+				return AccountStore.toCents(accounts[slot].getBalance());
+			}
+		};
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int n;
+		int threads;
+		double seconds;
+		try {
+			n = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+			threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+			seconds = args.length > 2 ? Double.parseDouble(args[2]) : 3;
+			if (n < 1 || threads < 1)
+				throw new IllegalArgumentException("Accounts and threads must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		AccountStore store = new AccountStore(n);
+		for (int i = 0; i < n; i++)
+			store.add(1000 + i, "Customer" + (i % 1000), 1000);
+		LedgerAuditor auditor = new LedgerAuditor();
+		System.out.println("Before: " + auditor.audit(store));
+
+		Writer[] writer = new Writer[threads];
+		for (int i = 0; i < threads; i++) {
+			writer[i] = new Writer(store, i);
+			writer[i].start();
+		}
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		while (System.nanoTime() < end) {
+			Thread.sleep(250);
+			long cutStart = System.nanoTime();
+			Cut cut = store.cut();
+			long paused = System.nanoTime() - cutStart;
+			Report r = auditor.audit(cut, cut.getExpectedTotalCents());
+			System.out.printf("Online: writers held %.1f ms, %s%n", paused / 1e6, r);
+		}
+		long ops = 0;
+		for (Writer w : writer) {
+			w.running = false;
+			w.join();
+			ops += w.ops;
+		}
+		System.out.printf("After %d writes: %s%n", ops, auditor.audit(store));
+	}
+
+	/**
+	 * Deposits and withdraws random amounts on random accounts
+	 */
+	private static class Writer extends Thread {
+		private final AccountStore store;
+		private final int seed;
+		volatile boolean running = true;
+		long ops;
+
+		Writer(AccountStore store, int seed) {
+			this.store = store;
+			this.seed = seed;
+		}
+
+		public void run() {
+			SplittableRandom random = new SplittableRandom(seed);
+			int n = store.size();
+			long k = 0;
+			while (running) {
+				int acc = 1000 + random.nextInt(n);
+				if (random.nextBoolean())
+					store.deposit(acc, random.nextInt(1, 100));
+				else
+					store.withdraw(acc, random.nextInt(1, 100));
+				k++;
+			}
+			ops = k;
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+package store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class NameDictionary
+ * Dictionary encoding of customer names: every distinct name is stored
+ * once and accounts refer to it by a small int code.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+final class NameDictionary {
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+	private final List<String> names = new ArrayList<String>();
+
+	/**
+	 * @return the code of name, adding it if it is new
+	 */
+	int encode(String name) {
+		Integer code = codes.get(name);
+		if (code == null) {
+			code = names.size();
+			codes.put(name, code);
+			names.add(name);
+		}
+		return code;
+	}
+
+	String decode(int code) {
+		return names.get(code);
+	}
+
+	int size() {
+		return names.size();
+	}
+
+}
@@ -0,0 +1,142 @@
+package store;
+
+/**
+ * Class PointInTime
+ * A consistent view of the balances of an AccountStore at the moment it
+ * was opened, read while deposits and withdrawals go on. Nothing is copied
+ * when the view is opened: writers copy a page for the view before they
+ * first change it, and the view reads a balance from that copy if there
+ * is one and from the store otherwise.
+ *
+ * Reading a balance from the store is validated the way a sequence lock
+ * read is: the balance is read first and the page's epoch state after it.
+ * A writer changes the state before it changes any balance of the page, so
+ * if the state has not moved to this view's epoch, the balance read was
+ * not written after the view was opened.
+ *
+ * A view must be closed once read; a closed view can no longer be read.
+ * It can be read by several threads at once. There is no such view of
+ * engine.Account objects, whose balances are not kept in a store.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class PointInTime implements Snapshot.Source, AutoCloseable {
+
+	private final AccountStore store;
+	final int epoch;
+	private final int size;
+	private final long expectedTotalCents;
+	/**
+	 * Pages copied by writers, published by the page's epoch state
+	 */
+	private final long[][] pages;
+	private volatile boolean closed;
+
+	PointInTime(AccountStore store, int epoch, int size, long expectedTotalCents) {
+		this.store = store;
+		this.epoch = epoch;
+		this.size = size;
+		this.expectedTotalCents = expectedTotalCents;
+		this.pages = new long[(size + AccountStore.PAGE - 1) >>> AccountStore.PAGE_SHIFT][];
+	}
+
+	void save(int page, long[] cents) {
+		pages[page] = cents;
+	}
+
+	/**
+	 * @return the total the balances should add up to: the opening balances
+	 *         plus the net deposits before the view was opened
+	 */
+	public long getExpectedTotalCents() {
+		return expectedTotalCents;
+	}
+
+	/**
+	 * @return how many pages writers have copied for this view so far
+	 */
+	public int getCopiedPages() {
+		int n = 0;
+		for (int p = 0; p < pages.length; p++)
+			if (store.pageEpoch(p) == epoch)
+				n++;
+		return n;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getAcc(int slot) {
+		checkSlot(slot);
+		return store.getAcc(slot);
+	}
+
+	public String getName(int slot) {
+		checkSlot(slot);
+		return store.getName(slot);
+	}
+
+	/**
+	 * @throws IllegalStateException if the view is closed
+	 */
+	public long getCents(int slot) {
+		checkSlot(slot);
+		int page = slot >>> AccountStore.PAGE_SHIFT;
+		long cents = store.getCents(slot);
+		int state = store.pageEpoch(page);
+		if (state != epoch && state != -epoch) {
+			// Writers stop copying once closed, so the balance may be newer
+			if (closed)
+				throw new IllegalStateException("Point in time view is closed");
+			return cents;
+		}
+		for (int spins = 0; state != epoch; spins++) {
+			if (spins < 100)
+				Thread.onSpinWait();
+			else
+				Thread.yield();
+			state = store.pageEpoch(page);
+		}
+		return pages[page][slot & (AccountStore.PAGE - 1)];
+	}
+
+	/**
+	 * @return the sum of all balances of the view
+	 */
+	public long totalCents() {
+		long sum = 0;
+		for (int i = 0; i < size; i++)
+			sum += getCents(i);
+		return sum;
+	}
+
+	/**
+	 * Copies the view into a Cut, which stays readable after close
+	 */
+	public Cut toCut() {
+		long[] cents = new long[size];
+		for (int i = 0; i < size; i++)
+			cents[i] = getCents(i);
+		return new Cut(store, cents, expectedTotalCents);
+	}
+
+	/**
+	 * Releases the writers from copying pages for this view
+	 */
+	public void close() {
+		closed = true;
+		store.release(this);
+	}
+
+	private void checkSlot(int slot) {
+		if (slot < 0 || slot >= size)
+			throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+	}
+
+}
@@ -0,0 +1,181 @@
+package store;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class PointInTimeBench
+ * Runs writers making random deposits and withdrawals on an AccountStore
+ * while a reporting thread sums all balances every 100 ms, and compares how
+ * the report is taken: not at all, as a live read without any snapshot,
+ * as a cut() copy, and as a pointInTime() view. For every report it checks
+ * that the balances add up to the expected total, which a torn read of
+ * balances changing under it generally does not.
+ *
+ * Writer throughput shows what the report costs the writers, and the
+ * pause is how long the writers were held back for one report at most.
+ *
+ * Usage: java store.PointInTimeBench [accounts [threads [seconds]]]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class PointInTimeBench {
+
+	/**
+	 * How a report reads the balances
+	 */
+	private enum Mode { NONE, LIVE, CUT, POINT_IN_TIME }
+
+	private static final long INTERVAL = 100;
+
+	public static void main(String[] args) throws InterruptedException {
+		int n;
+		int threads;
+		double seconds;
+		try {
+			n = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+			threads = args.length > 1 ? Integer.parseInt(args[1])
+					: Math.max(2, Runtime.getRuntime().availableProcessors());
+			seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+			if (n < 1 || threads < 1 || seconds <= 0)
+				throw new IllegalArgumentException("Accounts, threads and seconds must be positive");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.printf("%d accounts, %d writer threads, %d cores%n", n, threads,
+				Runtime.getRuntime().availableProcessors());
+
+		for (int round = 0; round < 2; round++) {
+			boolean print = round == 1;
+			if (!print)
+				System.out.println("Warming up");
+			else
+				System.out.printf("%-14s %14s %8s %11s %12s %12s %10s%n", "report", "writes/s", "reports",
+						"consistent", "max pause", "mean read", "copied");
+			for (Mode mode : Mode.values()) {
+				AccountStore store = new AccountStore(n);
+				for (int i = 0; i < n; i++)
+					store.add(1000 + i, "Customer" + (i % 1000), 1000);
+				Writer[] writer = new Writer[threads];
+				for (int i = 0; i < threads; i++) {
+					writer[i] = new Writer(store, i);
+					writer[i].start();
+				}
+				Reporter reporter = new Reporter(store, mode);
+				reporter.start();
+				long start = System.nanoTime();
+				Thread.sleep((long) (seconds * 1000));
+				reporter.running = false;
+				reporter.join();
+				long ops = 0;
+				for (Writer w : writer) {
+					w.running = false;
+					w.join();
+					ops += w.ops;
+				}
+				double elapsed = (System.nanoTime() - start) / 1e9;
+				if (print)
+					System.out.printf("%-14s %14.0f %8d %11d %9.2f ms %9.1f ms %9.1f%%%n",
+							mode.name().toLowerCase(), ops / elapsed, reporter.reports, reporter.consistent,
+							reporter.maxPause / 1e6, reporter.reports == 0 ? 0 : reporter.readNanos / 1e6 / reporter.reports,
+							reporter.reports == 0 ? 0 : 100.0 * reporter.copiedPages / reporter.reports
+									/ ((n + AccountStore.PAGE - 1) / AccountStore.PAGE));
+			}
+		}
+	}
+
+	/**
+	 * Sums all balances every INTERVAL ms, the way the mode says
+	 */
+	private static class Reporter extends Thread {
+		private final AccountStore store;
+		private final Mode mode;
+		volatile boolean running = true;
+		long reports;
+		long consistent;
+		long maxPause;
+		long readNanos;
+		long copiedPages;
+
+		Reporter(AccountStore store, Mode mode) {
+			this.store = store;
+			this.mode = mode;
+		}
+
+		public void run() {
+			while (running && mode != Mode.NONE) {
+				try {
+					Thread.sleep(INTERVAL);
+				} catch (InterruptedException e) {
+					return;
+				}
+				long start = System.nanoTime();
+				long total;
+				long expected;
+				long paused;
+				if (mode == Mode.LIVE) {
+					// Neither before nor after is the total of the balances read
+					expected = store.expectedTotalCents();
+					total = store.totalCents();
+					paused = 0;
+				} else if (mode == Mode.CUT) {
+					Cut cut = store.cut();
+					paused = System.nanoTime() - start;
+					expected = cut.getExpectedTotalCents();
+					total = 0;
+					for (int i = 0; i < cut.size(); i++)
+						total += cut.getCents(i);
+				} else {
+					try (PointInTime view = store.pointInTime()) {
+						paused = System.nanoTime() - start;
+						expected = view.getExpectedTotalCents();
+						total = view.totalCents();
+						copiedPages += view.getCopiedPages();
+					}
+				}
+				readNanos += System.nanoTime() - start;
+				maxPause = Math.max(maxPause, paused);
+				reports++;
+				if (total == expected)
+					consistent++;
+			}
+		}
+	}
+
+	/**
+	 * Deposits and withdraws random amounts on random accounts
+	 */
+	private static class Writer extends Thread {
+		private final AccountStore store;
+		private final int seed;
+		volatile boolean running = true;
+		long ops;
+
+		Writer(AccountStore store, int seed) {
+			this.store = store;
+			this.seed = seed;
+		}
+
+		public void run() {
+			SplittableRandom random = new SplittableRandom(seed);
+			int n = store.size();
+			long k = 0;
+			while (running) {
+				int acc = 1000 + random.nextInt(n);
+				if (random.nextBoolean())
+					store.deposit(acc, random.nextInt(1, 100));
+				else
+					store.withdraw(acc, random.nextInt(1, 100));
+				k++;
+			}
+			ops = k;
+		}
+	}
+
+}
@@ -0,0 +1,270 @@
+package store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class Snapshot
+ * A checkpoint of all balances in one compact binary file, and read access
+ * to such a file through memory maps.
+ *
+ * The file holds a 40 byte header followed by columns: balances in cents,
+ * journal positions, account numbers, name codes, the two tables of the
+ * IntIntMap from account number to slot, and the name dictionary as
+ * offsets plus UTF-8 bytes.
+ * Since the hash index is stored ready to probe, open() only maps the
+ * columns and reads the header: it costs the same for ten accounts as for
+ * ten million, and pages are read from disk only as they are touched.
+ *
+ * write() goes to a temporary file that is forced to disk and then moved
+ * over the old one, so a crash during a checkpoint leaves the previous
+ * snapshot in place. Each balance is read once while writing; with writers
+ * running the snapshot is per account, not across accounts, consistent.
+ *
+ * With a Journal, every balance is stored with the journal position of the
+ * last record it holds, and the header with the position of the journal
+ * when the checkpoint started, before which every record is held. After a
+ * crash the journal is restored on top of the snapshot from there, each
+ * record only to an account whose balance does not hold it yet (see
+ * LazyAccounts.recover), so no record is applied twice or lost.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Snapshot {
+
+	/**
+	 * What can be written into a snapshot
+	 */
+	public interface Source {
+		int size();
+		int getAcc(int slot);
+		String getName(int slot);
+		long getCents(int slot);
+
+		/**
+		 * Reads a balance together with the journal position of the last
+		 * record it holds, 0 for none
+		 * @param position where the position is stored, at index 0
+		 */
+		default long getCents(int slot, long[] position) {
+			position[0] = 0;
+			return getCents(slot);
+		}
+	}
+
+	/** "ACCTSNAP" */
+	private static final long MAGIC = 0x41434354534E4150L;
+	private static final int VERSION = 2;
+	private static final int HEADER = 40;
+
+	private final int count;
+	private final int capacity;
+	private final long journalPosition;
+	private final MappedByteBuffer cents;
+	private final MappedByteBuffer positions;
+	private final MappedByteBuffer accs;
+	private final MappedByteBuffer codes;
+	private final MappedByteBuffer keys;
+	private final MappedByteBuffer values;
+	private final MappedByteBuffer nameOffsets;
+	private final MappedByteBuffer nameBytes;
+
+	private Snapshot(FileChannel ch) throws IOException {
+		MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+		if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION)
+			throw new IOException("Not a version " + VERSION + " account snapshot");
+		count = header.getInt(12);
+		capacity = header.getInt(16);
+		int nameCount = header.getInt(20);
+		long nameLength = header.getLong(24);
+		journalPosition = header.getLong(32);
+
+		long offset = HEADER;
+		cents = ch.map(FileChannel.MapMode.READ_ONLY, offset, 8L * count);
+		offset += 8L * count;
+		positions = ch.map(FileChannel.MapMode.READ_ONLY, offset, 8L * count);
+		offset += 8L * count;
+		accs = ch.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count);
+		offset += 4L * count;
+		codes = ch.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count);
+		offset += 4L * count;
+		keys = ch.map(FileChannel.MapMode.READ_ONLY, offset, 4L * capacity);
+		offset += 4L * capacity;
+		values = ch.map(FileChannel.MapMode.READ_ONLY, offset, 4L * capacity);
+		offset += 4L * capacity;
+		nameOffsets = ch.map(FileChannel.MapMode.READ_ONLY, offset, 4L * (nameCount + 1));
+		offset += 4L * (nameCount + 1);
+		nameBytes = ch.map(FileChannel.MapMode.READ_ONLY, offset, nameLength);
+		if (offset + nameLength != ch.size())
+			throw new IOException("Snapshot is " + ch.size() + " bytes, expected " + (offset + nameLength));
+	}
+
+	/**
+	 * Maps a snapshot file. The mappings stay valid after this returns.
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static Snapshot open(Path file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new Snapshot(ch);
+		}
+	}
+
+	/**
+	 * Writes all accounts of a source into a snapshot file, replacing it.
+	 */
+	public static void write(Source source, Path file) throws IOException {
+		write(source, file, 0);
+	}
+
+	/**
+	 * Writes all accounts of a source into a snapshot file, replacing it.
+	 * @param journalPosition Journal.getPosition() taken before the
+	 *        checkpoint started, or 0 without a journal
+	 */
+	public static void write(Source source, Path file, long journalPosition) throws IOException {
+		int n = source.size();
+		IntIntMap index = new IntIntMap(n);
+		NameDictionary names = new NameDictionary();
+		int[] nameCodes = new int[n];
+		long[] balances = new long[n];
+		long[] held = new long[n];
+		long[] position = new long[1];
+		for (int i = 0; i < n; i++) {
+			index.putNew(source.getAcc(i), i);
+			String name = source.getName(i);
+			nameCodes[i] = names.encode(name == null ? "" : name);
+			balances[i] = source.getCents(i, position);
+			held[i] = position[0];
+		}
+		byte[][] encoded = new byte[names.size()][];
+		long nameLength = 0;
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = names.decode(i).getBytes(StandardCharsets.UTF_8);
+			nameLength += encoded[i].length;
+		}
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch),
+						1 << 16))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(index.keys().length);
+			out.writeInt(encoded.length);
+			out.writeLong(nameLength);
+			out.writeLong(journalPosition);
+			for (long c : balances)
+				out.writeLong(c);
+			for (long p : held)
+				out.writeLong(p);
+			for (int i = 0; i < n; i++)
+				out.writeInt(source.getAcc(i));
+			for (int c : nameCodes)
+				out.writeInt(c);
+			for (int k : index.keys())
+				out.writeInt(k);
+			for (int v : index.values())
+				out.writeInt(v);
+			int offset = 0;
+			for (byte[] b : encoded) {
+				out.writeInt(offset);
+				offset += b.length;
+			}
+			out.writeInt(offset);
+			for (byte[] b : encoded)
+				out.write(b);
+			out.flush();
+			// On disk before the move can make it the snapshot
+			ch.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory(file.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Forces the directory entry of a move to disk
+	 */
+	private static void forceDirectory(Path directory) {
+		try (FileChannel ch = FileChannel.open(directory, StandardOpenOption.READ)) {
+			ch.force(true);
+		} catch (IOException e) {
+			// Directories cannot be opened on every platform; the move is
+			// then as durable as the file system makes it
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the slot of an account number, or -1 if there is no such account
+	 */
+	public int slotOf(int acc) {
+		int mask = capacity - 1;
+		for (int i = IntIntMap.hash(acc) & mask; ; i = (i + 1) & mask) {
+			int k = keys.getInt(4 * i);
+			if (k == acc)
+				return values.getInt(4 * i);
+			if (k == IntIntMap.FREE)
+				return -1;
+		}
+	}
+
+	public int getAcc(int slot) {
+		return accs.getInt(4 * checkSlot(slot));
+	}
+
+	public String getName(int slot) {
+		int code = codes.getInt(4 * checkSlot(slot));
+		int from = nameOffsets.getInt(4 * code);
+		int to = nameOffsets.getInt(4 * (code + 1));
+		byte[] b = new byte[to - from];
+		for (int i = 0; i < b.length; i++)
+			b[i] = nameBytes.get(from + i);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	public long getCents(int slot) {
+		return cents.getLong(8 * checkSlot(slot));
+	}
+
+	/**
+	 * @return the position of the journal when the checkpoint started, or
+	 *         0 without a journal
+	 */
+	public long getJournalPosition() {
+		return journalPosition;
+	}
+
+	/**
+	 * @return the journal position of the last record the balance in a
+	 *         slot holds, 0 for none
+	 */
+	public long getJournalPosition(int slot) {
+		return positions.getLong(8 * checkSlot(slot));
+	}
+
+	private int checkSlot(int slot) {
+		if (slot < 0 || slot >= count)
+			throw new IndexOutOfBoundsException("Slot " + slot + " of " + count);
+		return slot;
+	}
+
+}
@@ -0,0 +1,89 @@
+package store;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Class VectorKernel
+ * The BatchPosting kernel on the Vector API, for packed balance columns:
+ * loads as many balances as the preferred vector holds, converts them to
+ * doubles, multiplies and rounds them or compares and subtracts under a
+ * mask, and stores them back, with the plain kernel for the tail. Strided
+ * columns go to the plain kernel as a whole.
+ *
+ * The long to double conversions of the API are not compiled to vector
+ * instructions by this JDK and cost more than the plain loop, so balances
+ * are converted with the 2^52 trick instead: adds, ors and compares only.
+ * It holds below 2^51 cents; larger balances, over 22 trillion dollars,
+ * and interest of 100% or more go to the plain kernel.
+ *
+ * Needs --add-modules jdk.incubator.vector to compile and to run;
+ * BatchPosting only loads it by name.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+final class VectorKernel implements BatchPosting.Kernel {
+
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+	/**
+	 * 2^52, and its bits: a long under 2^52 or'ed into them is the double
+	 * 2^52 + that long, exactly
+	 */
+	private static final double TWO_52 = 4503599627370496.0;
+	private static final long TWO_52_BITS = 0x4330000000000000L;
+	/**
+	 * Balances from here up go to the plain kernel, so that interest of
+	 * under 100% stays under 2^52
+	 */
+	private static final long LIMIT = 1L << 51;
+
+	private final BatchPosting.Kernel scalar = new BatchPosting.ScalarKernel();
+
+	public long interest(long[] cents, int from, int to, int shift, double factor) {
+		if (shift != 0 || !(factor < 2))
+			return scalar.interest(cents, from, to, shift, factor);
+		LongVector delta = LongVector.zero(LONGS);
+		int i = from;
+		for (int upper = from + LONGS.loopBound(to - from); i < upper; i += LONGS.length()) {
+			LongVector c = LongVector.fromArray(LONGS, cents, i);
+			if (c.compare(VectorOperators.GE, LIMIT).anyTrue()) {
+				delta = delta.add(scalar.interest(cents, i, i + LONGS.length(), 0, factor));
+				continue;
+			}
+			VectorMask<Long> positive = c.compare(VectorOperators.GT, 0);
+			DoubleVector y = c.or(TWO_52_BITS).reinterpretAsDoubles().sub(TWO_52).mul(factor).add(0.5);
+			// Adding and taking 2^52 rounds to an integer, half even; step
+			// back where that went up, which leaves floor(y), as (long) y
+			DoubleVector r = y.add(TWO_52).sub(TWO_52);
+			r = r.lanewise(VectorOperators.SUB, 1, r.compare(VectorOperators.GT, y));
+			LongVector n = r.add(TWO_52).reinterpretAsLongs().sub(TWO_52_BITS);
+			n = c.blend(n, positive);
+			n.intoArray(cents, i);
+			delta = delta.add(n.sub(c));
+		}
+		return delta.reduceLanes(VectorOperators.ADD) + scalar.interest(cents, i, to, 0, factor);
+	}
+
+	public long fee(long[] cents, int from, int to, int shift, long fee, long waivedFrom) {
+		if (shift != 0)
+			return scalar.fee(cents, from, to, shift, fee, waivedFrom);
+		long charged = 0;
+		int i = from;
+		for (int upper = from + LONGS.loopBound(to - from); i < upper; i += LONGS.length()) {
+			LongVector c = LongVector.fromArray(LONGS, cents, i);
+			VectorMask<Long> under = c.compare(VectorOperators.LT, waivedFrom);
+			c.lanewise(VectorOperators.SUB, fee, under).intoArray(cents, i);
+			charged += under.trueCount();
+		}
+		return -charged * fee + scalar.fee(cents, i, to, 0, fee, waivedFrom);
+	}
+
+}
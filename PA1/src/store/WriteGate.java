@@ -0,0 +1,90 @@
+package store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class WriteGate
+ * Lets any number of writers through until someone closes it to take a
+ * consistent cut, then holds new writers back until it is opened again.
+ *
+ * Writers announce themselves in one of several striped counters, each on
+ * its own cache line, and then check the closed flag. Closing sets the flag
+ * and waits until all counters are zero: from then on no writer is inside,
+ * and none will enter until open(). The counter increment and the flag
+ * read are ordered by the atomic add, so a writer either sees the gate
+ * closed or is seen by the closer.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+class WriteGate {
+
+	private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	/**
+	 * Longs between two counters, two cache lines
+	 */
+	private static final int STRIDE = 16;
+
+	private final int mask;
+	private final long[] counts;
+	private volatile boolean closed;
+
+	WriteGate() {
+		int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+		mask = Math.min(stripes, 64) - 1;
+		counts = new long[(mask + 1) * STRIDE];
+	}
+
+	/**
+	 * Enters as a writer, waiting while the gate is closed
+	 * @return the stripe to hand to exit
+	 */
+	int enter() {
+		int stripe = ((int) Thread.currentThread().getId() & mask) * STRIDE;
+		while (true) {
+			COUNTS.getAndAdd(counts, stripe, 1L);
+			if (!closed)
+				return stripe;
+			COUNTS.getAndAdd(counts, stripe, -1L);
+			for (int spins = 0; closed; spins++) {
+				if (spins < 100)
+					Thread.onSpinWait();
+				else
+					LockSupport.parkNanos(10000);
+			}
+		}
+	}
+
+	void exit(int stripe) {
+		COUNTS.getAndAdd(counts, stripe, -1L);
+	}
+
+	/**
+	 * Closes the gate and waits until no writer is inside. Only one thread
+	 * may close the gate at a time.
+	 */
+	void close() {
+		closed = true;
+		for (int i = 0; i < counts.length; i += STRIDE) {
+			// A writer inside may have been preempted, so do not spin for long
+			for (int spins = 0; (long) COUNTS.getVolatile(counts, i) != 0; spins++) {
+				if (spins < 100)
+					Thread.onSpinWait();
+				else
+					Thread.yield();
+			}
+		}
+	}
+
+	void open() {
+		closed = false;
+	}
+
+}
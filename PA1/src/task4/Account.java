@@ -184,6 +184,58 @@ public class Account {
 		for(int i=0;i<10000;i++)
 			k = k / 2;
 	}
+
+	/**
+	 * A method that deposits the same amount count times while taking the
+	 * lock only once. The fake computations of every single deposit are
+	 * still done, outside the lock.
+	 * @param amount A double that represents one deposit amount
+	 * @param count Number of deposits
+	 * @throws IllegalArgumentException if count is negative
+	 */
+	public void depositBatch(double amount, int count){
+		if (count < 0)
+			throw new IllegalArgumentException("Negative count " + count);
+		for(int i=0;i<count;i++)
+			waste(2 * 100);
+		apply(amount * count);
+	}
+
+	/**
+	 * A method that withdraws the same amount count times while taking the
+	 * lock only once. The fake computations of every single withdrawal are
+	 * still done, outside the lock.
+	 * @param amount A double that represents one withdrawal amount
+	 * @param count Number of withdrawals
+	 * @throws IllegalArgumentException if count is negative
+	 */
+	public void withdrawBatch(double amount, int count){
+		if (count < 0)
+			throw new IllegalArgumentException("Negative count " + count);
+		for(int i=0;i<count;i++)
+			waste(2 * 10000);
+		apply(-amount * count);
+	}
+
+	/**
+	 * Adds an already accumulated net amount under a single lock acquisition
+	 * @param delta A double to add to the balance, negative for withdrawals
+	 */
+	void apply(double delta){
+		synchronized(this) {
+			balance = balance + delta;
+		}
+	}
+
+	/**
+	 * Same fake computation as in deposit and withdraw
+	 * @param iterations number of divisions to waste time on
+	 */
+	static void waste(int iterations){
+		double k = 999999999;
+		for(int i=0;i<iterations;i++)
+			k = k / 2;
+	}
 	
 
 }
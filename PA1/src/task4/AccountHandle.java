@@ -0,0 +1,105 @@
+package task4;
+
+/**
+ * Class AccountHandle
+ * A client side handle on one account that accumulates deposits and
+ * withdrawals locally and flushes their net amount to the account under a
+ * single lock acquisition.
+ *
+ * A flush happens once flushSize operations are pending, or at the first
+ * operation made once the oldest pending one is maxStalenessMillis old.
+ * Every operation reads the clock, about 25 ns against the lock a flush
+ * saves, so the balance lags a client by at most maxStalenessMillis plus
+ * the time between two of its operations. A handle only flushes from its
+ * own operations: a client that goes idle leaves its pending operations
+ * unapplied until it calls flush(), as it must when done. A handle belongs
+ * to one thread.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class AccountHandle {
+
+	/**
+	 * The account operations are flushed to
+	 */
+	private Account account;
+	/**
+	 * Number of pending operations that triggers a flush
+	 */
+	private int flushSize;
+	/**
+	 * Age in nanoseconds of the oldest pending operation that triggers a flush
+	 */
+	private long maxStalenessNanos;
+
+	/**
+	 * Net amount not yet applied to the account
+	 */
+	private double pending;
+	/**
+	 * Number of operations in pending
+	 */
+	private int pendingCount;
+	/**
+	 * Time of the oldest pending operation
+	 */
+	private long pendingSince;
+
+	/**
+	 * @param account The account to operate on
+	 * @param flushSize Number of operations applied per lock acquisition
+	 * @param maxStalenessMillis Longest time an operation may stay pending
+	 */
+	public AccountHandle(Account account, int flushSize, long maxStalenessMillis) {
+		if (flushSize < 1)
+			throw new IllegalArgumentException("flushSize must be at least 1: " + flushSize);
+		this.account = account;
+		this.flushSize = flushSize;
+		this.maxStalenessNanos = maxStalenessMillis * 1000000L;
+	}
+
+	/**
+	 * Deposits into the account, possibly later
+	 * @param amount A double that represents a deposit amount
+	 */
+	public void deposit(double amount){
+		Account.waste(2 * 100);
+		add(amount);
+	}
+
+	/**
+	 * Withdraws from the account, possibly later
+	 * @param amount A double that represents a withdrawal amount
+	 */
+	public void withdraw(double amount){
+		Account.waste(2 * 10000);
+		add(-amount);
+	}
+
+	/**
+	 * Applies every pending operation to the account
+	 */
+	public void flush(){
+		if (pendingCount == 0)
+			return;
+		account.apply(pending);
+		pending = 0;
+		pendingCount = 0;
+	}
+
+	private void add(double delta){
+		long now = System.nanoTime();
+		if (pendingCount == 0)
+			pendingSince = now;
+		pending += delta;
+		pendingCount++;
+		if (pendingCount >= flushSize || now - pendingSince >= maxStalenessNanos)
+			flush();
+	}
+
+}
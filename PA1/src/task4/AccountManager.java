@@ -13,6 +13,10 @@ package task4;
 public class AccountManager {
 	public static void main(String[] args) {
 		// TODO Auto-generated method stub
+		// Optional batching: java task4.AccountManager [flushSize [maxStalenessMillis]]
+		// With the default flush size of 1 every operation takes the lock on its own
+		int flushSize = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		long maxStalenessMillis = args.length > 1 ? Long.parseLong(args[1]) : 100;
 
 		Account [] account = new Account[10];
 		Depositor [] deposit = new Depositor[10];
@@ -31,28 +35,28 @@ public class AccountManager {
 		account[9] = new Account(4321,"Ted",10000);
 
 		// The birth of 10 depositors 
-		deposit[0] = new Depositor(account[0]);
-		deposit[1] = new Depositor(account[1]);
-		deposit[2] = new Depositor(account[2]);
-		deposit[3] = new Depositor(account[3]);
-		deposit[4] = new Depositor(account[4]);
-		deposit[5] = new Depositor(account[5]);
-		deposit[6] = new Depositor(account[6]);
-		deposit[7] = new Depositor(account[7]);
-		deposit[8] = new Depositor(account[8]);
-		deposit[9] = new Depositor(account[9]);
+		deposit[0] = new Depositor(account[0], flushSize, maxStalenessMillis);
+		deposit[1] = new Depositor(account[1], flushSize, maxStalenessMillis);
+		deposit[2] = new Depositor(account[2], flushSize, maxStalenessMillis);
+		deposit[3] = new Depositor(account[3], flushSize, maxStalenessMillis);
+		deposit[4] = new Depositor(account[4], flushSize, maxStalenessMillis);
+		deposit[5] = new Depositor(account[5], flushSize, maxStalenessMillis);
+		deposit[6] = new Depositor(account[6], flushSize, maxStalenessMillis);
+		deposit[7] = new Depositor(account[7], flushSize, maxStalenessMillis);
+		deposit[8] = new Depositor(account[8], flushSize, maxStalenessMillis);
+		deposit[9] = new Depositor(account[9], flushSize, maxStalenessMillis);
 
 		// The birth of  10 withdraws 
-		withdraw[0] = new Withdrawer(account[0]);
-		withdraw[1] = new Withdrawer(account[1]);
-		withdraw[2] = new Withdrawer(account[2]);
-		withdraw[3] = new Withdrawer(account[3]);
-		withdraw[4] = new Withdrawer(account[4]);
-		withdraw[5] = new Withdrawer(account[5]);
-		withdraw[6] = new Withdrawer(account[6]);
-		withdraw[7] = new Withdrawer(account[7]);
-		withdraw[8] = new Withdrawer(account[8]);
-		withdraw[9] = new Withdrawer(account[9]);
+		withdraw[0] = new Withdrawer(account[0], flushSize, maxStalenessMillis);
+		withdraw[1] = new Withdrawer(account[1], flushSize, maxStalenessMillis);
+		withdraw[2] = new Withdrawer(account[2], flushSize, maxStalenessMillis);
+		withdraw[3] = new Withdrawer(account[3], flushSize, maxStalenessMillis);
+		withdraw[4] = new Withdrawer(account[4], flushSize, maxStalenessMillis);
+		withdraw[5] = new Withdrawer(account[5], flushSize, maxStalenessMillis);
+		withdraw[6] = new Withdrawer(account[6], flushSize, maxStalenessMillis);
+		withdraw[7] = new Withdrawer(account[7], flushSize, maxStalenessMillis);
+		withdraw[8] = new Withdrawer(account[8], flushSize, maxStalenessMillis);
+		withdraw[9] = new Withdrawer(account[9], flushSize, maxStalenessMillis);
 
 		System.out.println("Print initial account balances");
 		// Print initial account balances
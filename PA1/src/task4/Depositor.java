@@ -13,11 +13,40 @@ package task4;
 
 public class Depositor extends Thread {
 	private Account account ;
+	/**
+	 * Operations applied per lock acquisition, 1 to apply each operation on its own
+	 */
+	private int flushSize = 1;
+	/**
+	 * Longest time in milliseconds an operation may stay unapplied
+	 */
+	private long maxStalenessMillis;
+
 	public Depositor(Account account){
 		this.account = account;
 	}
+
+	/**
+	 * Creates a depositor that goes through an AccountHandle
+	 * @param account The account to operate on
+	 * @param flushSize Number of operations applied per lock acquisition
+	 * @param maxStalenessMillis Longest time an operation may stay unapplied
+	 */
+	public Depositor(Account account, int flushSize, long maxStalenessMillis){
+		this.account = account;
+		this.flushSize = flushSize;
+		this.maxStalenessMillis = maxStalenessMillis;
+	}
 	
 	public void run(){
+		if (flushSize > 1) {
+			AccountHandle handle = new AccountHandle(account, flushSize, maxStalenessMillis);
+			for (int i=0;i<10000000;i++)
+				handle.deposit(10);
+			handle.flush();
+			return;
+		}
+
 		for (int i=0;i<10000000;i++)
 		{
 			account.deposit(10);
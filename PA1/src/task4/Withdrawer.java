@@ -12,11 +12,40 @@ package task4;
 
 public class Withdrawer extends Thread {
 	private Account account ;
+	/**
+	 * Operations applied per lock acquisition, 1 to apply each operation on its own
+	 */
+	private int flushSize = 1;
+	/**
+	 * Longest time in milliseconds an operation may stay unapplied
+	 */
+	private long maxStalenessMillis;
+
 	public Withdrawer(Account account){
 		this.account = account;
 	}
+
+	/**
+	 * Creates a withdrawer that goes through an AccountHandle
+	 * @param account The account to operate on
+	 * @param flushSize Number of operations applied per lock acquisition
+	 * @param maxStalenessMillis Longest time an operation may stay unapplied
+	 */
+	public Withdrawer(Account account, int flushSize, long maxStalenessMillis){
+		this.account = account;
+		this.flushSize = flushSize;
+		this.maxStalenessMillis = maxStalenessMillis;
+	}
 	
 	public void run(){
+		if (flushSize > 1) {
+			AccountHandle handle = new AccountHandle(account, flushSize, maxStalenessMillis);
+			for (int i=0;i<10000000;i++)
+				handle.withdraw(10);
+			handle.flush();
+			return;
+		}
+
 		// Withdraw 10 CAD into instance variable account
 		for (int i=0;i<10000000;i++)
 		{
@@ -0,0 +1,350 @@
+package task5;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Class Account
+ * Implements one customized customer account for many of our own threads.
+ *
+ * Unlike task3 and task4 there is no monitor around the balance update:
+ * the balance is kept as a long number of cents and is updated with a
+ * compare-and-set loop, so depositors and withdrawers never park.
+ *
+ * When many threads deposit into the same account the single balance word
+ * becomes the bottleneck. Once the number of failed compare-and-sets passes
+ * STRIPE_THRESHOLD the account switches to striped mode: deposits are added
+ * to one of several padded cells picked by thread, and the balance is the
+ * base plus the sum of the cells. Withdrawals always go to the base, which
+ * is what lets tryWithdraw reject an overdraft exactly.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Account {
+
+	/*
+	 * ------------
+	 * Data members
+	 * ------------
+	 */
+
+	/**
+	 * Handle used to compare-and-set the balance field
+	 */
+	private static final VarHandle CENTS;
+
+	static {
+		try {
+			CENTS = MethodHandles.lookup().findVarHandle(Account.class, "cents", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Failed compare-and-sets on the base after which deposits are striped
+	 */
+	static final int STRIPE_THRESHOLD = Integer.getInteger("task5.stripeThreshold", 64);
+
+	/**
+	 * Number of cells once striped, a power of two no smaller than the core count
+	 */
+	private static final int STRIPES =
+			Integer.highestOneBit(Math.max(2, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+	/**
+	 * Attribute presents an account number
+	 */
+
+	private int acc;
+	/**
+	 * Attribute that presents an customer name
+	 */
+	private String name;
+	/**
+	 * Attribute that presents an account balance in cents, or the base of
+	 * the balance once striped
+	 */
+	private volatile long cents;
+
+	/**
+	 * Deposit cells, null until the account is striped
+	 */
+	private volatile Cell[] cells;
+
+	/**
+	 * Approximate count of failed compare-and-sets on the base
+	 */
+	private int failures;
+
+	/*
+	 * ------------
+	 * Constructors
+	 * ------------
+	 */
+
+	/**
+	 * Assigns account number, name and balance.
+	 *
+	 * @param acc A unique integer that represents account number
+	 * @param name A string indicating human-readable customer's name
+	 * @param balance A double indicating account balance
+	 */
+
+	public Account(int acc, String name, double balance) {
+		super();
+		this.acc = acc;
+		this.name = name;
+		this.cents = toCents(balance);
+	}
+
+
+	@Override
+	/**
+	 * equals method works as == operator
+	 * it checks if two accounts are identical
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Account other = (Account) obj;
+		if (acc != other.acc)
+			return false;
+		if (total() != other.total())
+			return false;
+		if (name == null) {
+			if (other.name != null)
+				return false;
+		} else if (!name.equals(other.name))
+			return false;
+		return true;
+	}
+
+	/**
+	 * Accessor for account no
+	 * @return account no
+	 */
+	public int getAcc() {
+		return acc;
+	}
+
+	/**
+	 * Mutator for account no
+	 * @param acc A unique int for acoount number
+	 */
+	public void setAcc(int acc) {
+		this.acc = acc;
+	}
+
+	/**
+	 * Accessor for a customer's name
+	 * @return a customer's name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Mutator for a customer name
+	 * @param name A string that represents a customer name
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Accessor for account balance
+	 * @return an account balance
+	 */
+	public double getBalance() {
+		return total() / 100.0;
+	}
+
+	/**
+	 * Mutator for account balance.
+	 * Once striped the cells are left alone, since cells only ever grow
+	 * (see tryWithdraw): the base is set to the balance minus what the
+	 * cells hold. A deposit into a cell meanwhile counts as made after.
+	 * @param balance A double that represents an account balance
+	 */
+	public void setBalance(double balance) {
+		long target = toCents(balance);
+		// The stripe lock keeps the cells from being published meanwhile
+		synchronized (this) {
+			while (true) {
+				long base = cents;
+				if (CENTS.compareAndSet(this, base, target - sumCells()))
+					return;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether deposits are currently spread over cells
+	 * @return true once the account has switched to striped mode
+	 */
+	public boolean isStriped() {
+		return cells != null;
+	}
+
+	/**
+	 * A method to print this account
+	 */
+	public String toString(){
+		return "Account: "+acc+" \tName: "+name+" \tBalance:\t"+getBalance();
+	}
+
+	/**
+	 * A method that allows a customer to deposit money into this account
+	 * @param amount A double that represents a deposit amount
+	 */
+	public void deposit(double amount){
+
+		// Waste some time doing fake computations
+		// do not remove or modify any of the following 3 statements
+		double k = 999999999;
+		for(int i=0;i<100;i++)
+			k = k / 2;
+
+			credit(toCents(amount));
+
+		// Waste some time doing fake computations
+		// do not remove or modify any of the following 3 statements
+		k = 999999999;
+		for(int i=0;i<100;i++)
+			k = k / 2;
+
+	}
+
+	/**
+	 * A method that allows a customer to withdraw money from this account
+	 * @param amount A double that represents a withdrawal amount
+	 */
+	public void withdraw(double amount){
+
+		// Waste some time doing fake computations
+		// do not remove or modify any of the following 3 statements
+		double k = 999999999;
+		for(int i=0;i<10000;i++)
+			k = k / 2;
+
+			addToBase(-toCents(amount));
+
+
+		// Waste some time doing fake computations
+		// do not remove or modify any of the following 3 statements
+		k = 999999999;
+		for(int i=0;i<10000;i++)
+			k = k / 2;
+	}
+
+	/**
+	 * A method that withdraws money only if the account covers it.
+	 * The check and the debit are one compare-and-set on the base, so the
+	 * balance never goes negative because of this call; a deposit racing
+	 * with it may still be missed, in which case the withdrawal is refused.
+	 * @param amount A double that represents a withdrawal amount
+	 * @return true if the money was withdrawn, false on insufficient funds
+	 */
+	public boolean tryWithdraw(double amount){
+		long delta = toCents(amount);
+		while (true) {
+			long base = cents;
+			// Cells only ever grow, so this sum never overstates the balance
+			long total = base + sumCells();
+			if (total < delta)
+				return false;
+			if (CENTS.compareAndSet(this, base, base - delta))
+				return true;
+		}
+	}
+
+	/**
+	 * Adds deposited cents, to this thread's cell once the account is striped.
+	 * Only non-negative amounts may go to a cell, see tryWithdraw.
+	 * @param delta cents to add
+	 */
+	private void credit(long delta){
+		Cell[] cs = cells;
+		if (cs == null || delta < 0) {
+			addToBase(delta);
+			return;
+		}
+		Cell c = cs[(int) mix(Thread.currentThread().getId()) & (cs.length - 1)];
+		while (!c.tryAdd(delta))
+			;
+	}
+
+	/**
+	 * Adds a signed number of cents to the base without taking a lock.
+	 * Retries until no other thread changed the base in between, and
+	 * stripes the account if that happens too often.
+	 * @param delta cents to add, negative for a withdrawal
+	 */
+	private void addToBase(long delta){
+		long current = (long) CENTS.getVolatile(this);
+		while (!CENTS.weakCompareAndSet(this, current, current + delta)) {
+			if (cells == null && ++failures > STRIPE_THRESHOLD)
+				stripe();
+			current = (long) CENTS.getVolatile(this);
+		}
+	}
+
+	/**
+	 * Switches to striped mode. Racing callers may each build an array;
+	 * only the first one to be published is kept.
+	 */
+	private void stripe(){
+		Cell[] cs = new Cell[STRIPES];
+		for (int i = 0; i < cs.length; i++)
+			cs[i] = new Cell();
+		synchronized (this) {
+			if (cells == null)
+				cells = cs;
+		}
+	}
+
+	/**
+	 * @return the balance in cents, base plus all cells
+	 */
+	private long total(){
+		return cents + sumCells();
+	}
+
+	private long sumCells(){
+		Cell[] cs = cells;
+		long sum = 0;
+		if (cs != null)
+			for (Cell c : cs)
+				sum += c.value;
+		return sum;
+	}
+
+	/**
+	 * Spreads thread ids so that consecutive ids land on different cells
+	 */
+	private static long mix(long id){
+		id *= 0x9E3779B97F4A7C15L;
+		return id ^ (id >>> 32);
+	}
+
+	/**
+	 * Converts a dollar amount into whole cents, rounding to the nearest cent.
+	 * @param amount A double that represents a dollar amount
+	 * @return the amount in cents
+	 */
+	static long toCents(double amount){
+		return Math.round(amount * 100);
+	}
+
+
+}
@@ -0,0 +1,52 @@
+package task5;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Class Cell
+ * One stripe of a striped account balance, padded so that two cells never
+ * share a cache line and threads depositing into different cells do not
+ * invalidate each other.
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+final class Cell {
+
+	private static final VarHandle VALUE;
+
+	static {
+		try {
+			VALUE = MethodHandles.lookup().findVarHandle(Cell.class, "value", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/*
+	 * Padding in front of and behind the value, 56 bytes each
+	 */
+	long p0, p1, p2, p3, p4, p5, p6;
+
+	/**
+	 * Cents held by this cell
+	 */
+	volatile long value;
+
+	long q0, q1, q2, q3, q4, q5, q6;
+
+	/**
+	 * Tries once to add delta to this cell.
+	 * @return false if another thread changed the cell in between
+	 */
+	boolean tryAdd(long delta) {
+		long current = value;
+		return VALUE.weakCompareAndSet(this, current, current + delta);
+	}
+
+}
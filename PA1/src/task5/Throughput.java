@@ -0,0 +1,120 @@
+package task5;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Class Throughput
+ * Runs the AccountManager workload (one depositor and one withdrawer per
+ * account, 10 accounts) against the monitor based accounts of task3 and
+ * task4 and the compare-and-set account of this package, and prints the
+ * operations per second reached by each of them. It then repeats the run
+ * with every thread on a single hot account, which is where task5 switches
+ * to striped deposits.
+ *
+ * Usage: java task5.Throughput [operations per thread]
+ *
+ * @author Malek Barhoush, mbarhoush@hotmail.com;
+ *
+ *
+ * $Revision: 1.0 $
+ * $Last Revision Date: 2019/01/06
+ */
+
+public class Throughput {
+
+	/**
+	 * Number of accounts, as in AccountManager
+	 */
+	private static final int ACCOUNTS = 10;
+
+	public static void main(String[] args) {
+		int ops = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		DoubleConsumer[] deposits = new DoubleConsumer[ACCOUNTS];
+		DoubleConsumer[] withdraws = new DoubleConsumer[ACCOUNTS];
+
+		// Run everything twice so the second round is measured on warm code
+		for (int round = 0; round < 2; round++) {
+			boolean report = round == 1;
+
+			for (int i = 0; i < ACCOUNTS; i++) {
+				task3.Account a = new task3.Account(i, "task3", 1000);
+				deposits[i] = a::deposit;
+				withdraws[i] = a::withdraw;
+			}
+			run("task3 (synchronized methods)", deposits, withdraws, ops, report);
+
+			for (int i = 0; i < ACCOUNTS; i++) {
+				task4.Account a = new task4.Account(i, "task4", 1000);
+				deposits[i] = a::deposit;
+				withdraws[i] = a::withdraw;
+			}
+			run("task4 (synchronized block)", deposits, withdraws, ops, report);
+
+			for (int i = 0; i < ACCOUNTS; i++) {
+				Account a = new Account(i, "task5", 1000);
+				deposits[i] = a::deposit;
+				withdraws[i] = a::withdraw;
+			}
+			run("task5 (compare-and-set)", deposits, withdraws, ops, report);
+
+			// Same thread count, but every thread works on one hot account
+			task4.Account hot4 = new task4.Account(0, "task4", 1000);
+			for (int i = 0; i < ACCOUNTS; i++) {
+				deposits[i] = hot4::deposit;
+				withdraws[i] = hot4::withdraw;
+			}
+			run("task4, one hot account", deposits, withdraws, ops, report);
+
+			Account hot5 = new Account(0, "task5", 1000);
+			for (int i = 0; i < ACCOUNTS; i++) {
+				deposits[i] = hot5::deposit;
+				withdraws[i] = hot5::withdraw;
+			}
+			run("task5, one hot account", deposits, withdraws, ops, report);
+			if (report)
+				System.out.println("task5 hot account striped: " + hot5.isStriped()
+						+ ", balance " + hot5.getBalance());
+		}
+	}
+
+	/**
+	 * Starts one depositor and one withdrawer thread per account and waits
+	 * for all of them to finish.
+	 */
+	private static void run(String label, DoubleConsumer[] deposits, DoubleConsumer[] withdraws,
+			int ops, boolean report) {
+		Thread[] threads = new Thread[2 * deposits.length];
+		for (int i = 0; i < deposits.length; i++) {
+			threads[2 * i] = loop(deposits[i], ops);
+			threads[2 * i + 1] = loop(withdraws[i], ops);
+		}
+
+		long start = System.nanoTime();
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (report) {
+			double perSec = (double) threads.length * ops / (elapsed / 1e9);
+			System.out.printf("%-32s %8d ms %14.0f ops/s%n", label, elapsed / 1000000, perSec);
+		}
+	}
+
+	private static Thread loop(final DoubleConsumer op, final int ops) {
+		return new Thread() {
+			public void run() {
+				for (int i = 0; i < ops; i++)
+					op.accept(10);
+			}
+		};
+	}
+
+}